@@ -0,0 +1,121 @@
+package com.hardel.eventmod.benchmark;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.hardel.eventmod.event.parkour.CheckpointData;
+import com.hardel.eventmod.event.parkour.ParkourConfigData;
+import com.hardel.eventmod.event.parkour.PortalType;
+import com.hardel.eventmod.utils.BlockUtils;
+import net.minecraft.Bootstrap;
+import net.minecraft.SharedConstants;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Synthetic data shared by the benchmarks.
+ * Courses are laid out along the x axis, {@link #COURSE_SPACING} blocks apart, each checkpoint being a small
+ * portal {@link #CHECKPOINT_SPACING} blocks after the previous one, so a player walking along x crosses them in order.
+ */
+public class BenchmarkSupport {
+    public static final int COURSE_SPACING = 1024;
+    public static final int CHECKPOINT_SPACING = 8;
+    public static final int GROUND_Y = 64;
+    public static final int LANE_WIDTH = 5;
+    private static final Path EVENTS_DIR = Paths.get("events");
+
+    /**
+     * Initialize the registries, needed by the particles and sounds of the configs
+     */
+    public static void bootstrap() {
+        SharedConstants.createGameVersion();
+        Bootstrap.initialize();
+    }
+
+    /**
+     * Delete the events directory of the working directory, so every trial starts from empty data
+     */
+    public static void resetEventsDirectory() throws IOException {
+        if (!Files.exists(EVENTS_DIR)) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(EVENTS_DIR)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    public static List<ParkourConfigData> courses(int courseCount, int checkpointCount) {
+        List<ParkourConfigData> configs = new ArrayList<>(courseCount);
+        for (int course = 0; course < courseCount; course++) {
+            int baseX = course * COURSE_SPACING;
+            List<CheckpointData> checkpoints = new ArrayList<>(checkpointCount);
+            for (int index = 0; index < checkpointCount; index++) {
+                int x = checkpointX(course, index);
+                PortalType type = index == 0 ? PortalType.START : index == checkpointCount - 1 ? PortalType.END : PortalType.CHECKPOINT;
+                checkpoints.add(CheckpointData.builder()
+                        .withDefaults()
+                        .start(new BlockPos(x, GROUND_Y, 0))
+                        .end(new BlockPos(x + 1, GROUND_Y + 2, LANE_WIDTH - 1))
+                        .respawn(new BlockPos(x, GROUND_Y, 2))
+                        .index(index)
+                        .type(type)
+                        .build());
+            }
+
+            configs.add(ParkourConfigData.builder()
+                    .withDefaults("course_" + course)
+                    .start(new BlockPos(baseX - 4, GROUND_Y - 4, -4))
+                    .end(new BlockPos(courseLength(checkpointCount) + baseX + 4, GROUND_Y + 16, LANE_WIDTH + 4))
+                    .checkpoints(checkpoints)
+                    .build());
+        }
+
+        return configs;
+    }
+
+    public static int checkpointX(int course, int index) {
+        return course * COURSE_SPACING + index * CHECKPOINT_SPACING;
+    }
+
+    /**
+     * Length in blocks of the path from the first to after the last checkpoint of a course
+     */
+    public static int courseLength(int checkpointCount) {
+        return checkpointCount * CHECKPOINT_SPACING;
+    }
+
+    public static UUID[] players(int playerCount) {
+        UUID[] players = new UUID[playerCount];
+        for (int i = 0; i < playerCount; i++) {
+            players[i] = new UUID(0x5EED_0000_0000_0000L, i);
+        }
+
+        return players;
+    }
+
+    /**
+     * Finder player data with the given number of found blocks, spread over a few variants
+     */
+    public static JsonArray finderEntries(int entryCount) {
+        JsonArray data = new JsonArray(entryCount);
+        for (int i = 0; i < entryCount; i++) {
+            JsonObject entry = new JsonObject();
+            entry.add("position", BlockUtils.posToJson(new BlockPos(i * 17 % 4096 - 2048, GROUND_Y + i % 32, i * 31 % 4096 - 2048)));
+            entry.addProperty("variant", "variant_" + i % 4);
+            data.add(entry);
+        }
+
+        return data;
+    }
+}
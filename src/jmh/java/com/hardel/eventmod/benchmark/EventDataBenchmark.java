@@ -0,0 +1,73 @@
+package com.hardel.eventmod.benchmark;
+
+import com.google.gson.JsonArray;
+import com.hardel.eventmod.EventMod;
+import com.hardel.eventmod.event.EventData;
+import com.hardel.eventmod.event.finder.FinderPlayerDataCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading and writing the player data of a finder player through the store, with the JSON or the binary codec,
+ * and the pretty printed JSON config files.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventDataBenchmark {
+    private static final String CONFIG_EVENT = "benchmark";
+
+    @Param({"10", "100", "1000"})
+    public int entries;
+
+    @Param({"json", "binary"})
+    public String codec;
+
+    private final UUID playerUuid = BenchmarkSupport.players(1)[0];
+    private JsonArray data;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarkSupport.bootstrap();
+        BenchmarkSupport.resetEventsDirectory();
+        if (codec.equals("binary")) {
+            EventData.registerCodec(EventMod.finderKey, new FinderPlayerDataCodec());
+        }
+
+        data = BenchmarkSupport.finderEntries(entries);
+        EventData.savePlayerEventData(playerUuid, EventMod.finderKey, data);
+        EventData.saveConfigEventData(CONFIG_EVENT, data);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        EventData.closeStores();
+        BenchmarkSupport.resetEventsDirectory();
+    }
+
+    @Benchmark
+    public void savePlayerData() {
+        EventData.savePlayerEventData(playerUuid, EventMod.finderKey, data);
+    }
+
+    @Benchmark
+    public JsonArray loadPlayerData() {
+        return EventData.loadPlayerEventData(playerUuid, EventMod.finderKey);
+    }
+
+    @Benchmark
+    public void saveConfig() {
+        EventData.saveConfigEventData(CONFIG_EVENT, data);
+    }
+
+    @Benchmark
+    public JsonArray loadConfig() {
+        return EventData.loadConfigEventData(CONFIG_EVENT);
+    }
+}
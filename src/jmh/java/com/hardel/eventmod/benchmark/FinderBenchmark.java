@@ -0,0 +1,80 @@
+package com.hardel.eventmod.benchmark;
+
+import com.hardel.eventmod.EventMod;
+import com.hardel.eventmod.event.EventData;
+import com.hardel.eventmod.event.EventJournal;
+import com.hardel.eventmod.event.PlayerDataWriter;
+import com.hardel.eventmod.event.finder.FinderPlayerData;
+import com.hardel.eventmod.event.finder.FinderPlayerDataCodec;
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recording a head found by a player, either a new one queued for the journal or one already found.
+ * The writer runs in the background like on a server, and every iteration starts from empty player data
+ * so the found sets and the journal do not keep growing across iterations. Compaction is measured
+ * by {@link JournalCompactionBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FinderBenchmark {
+    private static final String VARIANT = "variant_0";
+
+    @Param({"10", "100", "1000"})
+    public int players;
+
+    private UUID[] playerUuids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        BenchmarkSupport.bootstrap();
+        EventData.registerCodec(EventMod.finderKey, new FinderPlayerDataCodec());
+        playerUuids = BenchmarkSupport.players(players);
+    }
+
+    @Setup(Level.Iteration)
+    public void setupIteration() throws IOException {
+        BenchmarkSupport.resetEventsDirectory();
+        PlayerDataWriter.start();
+
+        next = 0;
+        for (UUID playerUuid : playerUuids) {
+            FinderPlayerData.getCache().pin(playerUuid);
+            FinderPlayerData.tryAddNewEntry(BlockPos.ORIGIN, VARIANT, playerUuid);
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDownIteration() throws IOException {
+        PlayerDataWriter.stop();
+        EventJournal.closeAll();
+        EventData.closeStores();
+        for (UUID playerUuid : playerUuids) {
+            FinderPlayerData.getCache().unload(playerUuid);
+        }
+
+        BenchmarkSupport.resetEventsDirectory();
+    }
+
+    @Benchmark
+    public boolean tryAddNewEntry() {
+        int count = next++;
+        // Every call finds a block never found before, walking a 1024 x 1024 area
+        BlockPos pos = new BlockPos(count & 1023, BenchmarkSupport.GROUND_Y + (count >>> 20), (count >>> 10) & 1023);
+        return FinderPlayerData.tryAddNewEntry(pos, VARIANT, playerUuids[count % players]);
+    }
+
+    @Benchmark
+    public boolean tryAddExistingEntry() {
+        return FinderPlayerData.tryAddNewEntry(BlockPos.ORIGIN, VARIANT, playerUuids[next++ % players]);
+    }
+}
@@ -0,0 +1,76 @@
+package com.hardel.eventmod.benchmark;
+
+import com.google.gson.JsonArray;
+import com.hardel.eventmod.EventMod;
+import com.hardel.eventmod.event.EventData;
+import com.hardel.eventmod.event.EventJournal;
+import com.hardel.eventmod.event.finder.FinderPlayerDataCodec;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compacting the finder journal into the store, as done by the background writer, after every player appended
+ * a few found blocks to stored data of a hundred blocks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JournalCompactionBenchmark {
+    private static final int STORED_ENTRIES = 100;
+    private static final int APPENDED_ENTRIES = 8;
+
+    @Param({"10", "100", "1000"})
+    public int players;
+
+    private UUID[] playerUuids;
+    private JsonArray appended;
+    private EventJournal journal;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarkSupport.bootstrap();
+        BenchmarkSupport.resetEventsDirectory();
+        EventData.registerCodec(EventMod.finderKey, new FinderPlayerDataCodec());
+
+        playerUuids = BenchmarkSupport.players(players);
+        JsonArray stored = BenchmarkSupport.finderEntries(STORED_ENTRIES);
+        for (UUID playerUuid : playerUuids) {
+            EventData.savePlayerEventData(playerUuid, EventMod.finderKey, stored);
+        }
+
+        // Entries past the stored ones, merged and deduplicated against the stored data by every compaction
+        JsonArray entries = BenchmarkSupport.finderEntries(STORED_ENTRIES + APPENDED_ENTRIES);
+        appended = new JsonArray(APPENDED_ENTRIES);
+        for (int i = STORED_ENTRIES; i < entries.size(); i++) {
+            appended.add(entries.get(i));
+        }
+
+        journal = EventJournal.get(EventMod.finderKey, Paths.get("events", "players", EventMod.finderKey + ".journal"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        EventJournal.closeAll();
+        EventData.closeStores();
+        BenchmarkSupport.resetEventsDirectory();
+    }
+
+    @Setup(Level.Invocation)
+    public void append() {
+        for (UUID playerUuid : playerUuids) {
+            journal.append(playerUuid, appended);
+        }
+    }
+
+    @Benchmark
+    public void compact() {
+        journal.compact();
+    }
+}
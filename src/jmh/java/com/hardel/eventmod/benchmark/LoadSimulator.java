@@ -0,0 +1,289 @@
+package com.hardel.eventmod.benchmark;
+
+import com.hardel.eventmod.EventMod;
+import com.hardel.eventmod.event.EventData;
+import com.hardel.eventmod.event.EventJournal;
+import com.hardel.eventmod.event.PlayerDataWriter;
+import com.hardel.eventmod.event.finder.FinderConfigData;
+import com.hardel.eventmod.event.finder.FinderPlayerData;
+import com.hardel.eventmod.event.finder.FinderPlayerDataCodec;
+import com.hardel.eventmod.event.parkour.*;
+import net.minecraft.util.math.BlockPos;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Headless load driver of the parkour and finder events, run with {@code ./gradlew simulate}.
+ * Synthetic players walk the configured courses through every checkpoint and click the heads of the finder variants,
+ * going through the same player data, journal and writer code as a server, on the {@code events/} directory of the
+ * working directory. Courses and heads are generated when the directory has no config yet.
+ * <p>
+ * Options, given as {@code --name=value}:
+ * {@code players} (100), {@code ticks} (1200), {@code click_interval} ticks between two clicks of a player (40),
+ * {@code heads} per finder variant (64), {@code courses} (5) and {@code checkpoints} (20) of the generated courses,
+ * {@code realtime} to wait for the 50 ms tick cadence so the background writer sees a real schedule (true).
+ * <p>
+ * Players join through the same preload as the server, and every tick runs {@link ParkourAction#step} for each player
+ * like {@code ParkourAction.onTick}. Clicks mirror {@code FinderAction.onBlockUse}, the packets are left out
+ * since they need a connected client.
+ */
+public class LoadSimulator {
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final Path EVENTS_DIR = Paths.get("events");
+    private final int players;
+    private final int ticks;
+    private final int clickInterval;
+    private final int headsPerVariant;
+    private final boolean realtime;
+    private final UUID[] playerUuids;
+    private final SplittableRandom random = new SplittableRandom(42);
+    // Stands in for the task queue of the server, drained at the start of every tick
+    private final Queue<Runnable> serverTasks = new ConcurrentLinkedQueue<>();
+    private final Executor serverExecutor = serverTasks::add;
+    private long[][] paths;
+    private Head[] heads;
+    private int tick;
+    private long checkpoints;
+    private long finishes;
+    private long clicks;
+    private long founds;
+
+    private LoadSimulator(Map<String, String> options) {
+        this.players = Integer.parseInt(options.getOrDefault("players", "100"));
+        this.ticks = Integer.parseInt(options.getOrDefault("ticks", "1200"));
+        this.clickInterval = Math.max(1, Integer.parseInt(options.getOrDefault("click_interval", "40")));
+        this.headsPerVariant = Integer.parseInt(options.getOrDefault("heads", "64"));
+        this.realtime = Boolean.parseBoolean(options.getOrDefault("realtime", "true"));
+        this.playerUuids = BenchmarkSupport.players(players);
+    }
+
+    public static void main(String[] args) throws IOException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+
+        BenchmarkSupport.bootstrap();
+        LoadSimulator simulator = new LoadSimulator(options);
+        simulator.start(Integer.parseInt(options.getOrDefault("courses", "5")), Integer.parseInt(options.getOrDefault("checkpoints", "20")));
+        simulator.run();
+    }
+
+    /**
+     * Same startup as the server, then generate the missing configs and join every player
+     */
+    private void start(int courseCount, int checkpointCount) {
+        EventData.registerCodec(EventMod.ParkourKey, new ParkourPlayerDataCodec());
+        EventData.registerCodec(EventMod.finderKey, new FinderPlayerDataCodec());
+        EventData.recoverJournals();
+        PlayerDataWriter.start();
+        ParkourConfigData.reload();
+        FinderConfigData.reload();
+
+        if (ParkourConfigData.getInstance().isEmpty()) {
+            BenchmarkSupport.courses(courseCount, checkpointCount).forEach(ParkourConfigData::addNewConfig);
+        }
+
+        if (FinderConfigData.getInstance().isEmpty()) {
+            for (int i = 0; i < 4; i++) {
+                FinderConfigData.addNewConfig(FinderConfigData.builder().withDefaults("variant_" + i, new UUID(0x4EAD_0000_0000_0000L, i)).build());
+            }
+        }
+
+        ParkourPlayerData.loadLeaderboards(serverExecutor);
+        List<ParkourConfigData> configs = ParkourConfigData.getInstance();
+        paths = new long[configs.size()][];
+        for (int i = 0; i < configs.size(); i++) {
+            paths[i] = path(configs.get(i));
+        }
+
+        List<Head> placed = new ArrayList<>();
+        for (FinderConfigData config : FinderConfigData.getInstance()) {
+            for (int i = 0; i < headsPerVariant; i++) {
+                placed.add(new Head(config.uuid(), new BlockPos(random.nextInt(-512, 512), BenchmarkSupport.GROUND_Y, random.nextInt(-512, 512))));
+            }
+        }
+
+        heads = placed.toArray(new Head[0]);
+        for (UUID playerUuid : playerUuids) {
+            ParkourPlayerData.join(playerUuid, serverExecutor);
+            FinderPlayerData.join(playerUuid, serverExecutor);
+        }
+
+        System.out.printf("Simulating %d players on %d courses and %d heads for %d ticks%n", players, configs.size(), heads.length, ticks);
+    }
+
+    private void run() throws IOException {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] durations = new long[ticks];
+        long writtenBefore = readProcessIo("wchar");
+        long storageBefore = readProcessIo("write_bytes");
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+
+        long deadline = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            long tickStart = System.nanoTime();
+            tick();
+            durations[i] = System.nanoTime() - tickStart;
+
+            deadline += TICK_NANOS;
+            if (realtime) {
+                LockSupport.parkNanos(deadline - System.nanoTime());
+            }
+        }
+
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        PlayerDataWriter.stop();
+        EventJournal.closeAll();
+        EventData.closeStores();
+        long written = difference(writtenBefore, readProcessIo("wchar"));
+        long storage = difference(storageBefore, readProcessIo("write_bytes"));
+
+        Arrays.sort(durations);
+        System.out.printf("Tick latency (ms): p50 %.3f, p90 %.3f, p99 %.3f, p99.9 %.3f, max %.3f%n",
+                percentile(durations, 0.50), percentile(durations, 0.90), percentile(durations, 0.99), percentile(durations, 0.999), durations[ticks - 1] / 1e6);
+        System.out.printf("Ticks over 50 ms: %d%n", ticks - upperBound(durations, TICK_NANOS));
+        System.out.printf("Tick thread allocation: %d bytes, %d bytes per tick%n", allocated, allocated / ticks);
+        System.out.printf("Disk: %d bytes written, %d bytes sent to storage (-1 without /proc), events directory %d bytes%n", written, storage, directorySize());
+        System.out.printf("Checkpoints %d, finishes %d, clicks %d, new heads found %d%n", checkpoints, finishes, clicks, founds);
+    }
+
+    private void tick() {
+        Runnable task;
+        while ((task = serverTasks.poll()) != null) {
+            task.run();
+        }
+
+        for (int i = 0; i < players; i++) {
+            UUID playerUuid = playerUuids[i];
+            long[] path = paths.length > 0 ? paths[i % paths.length] : null;
+            if (path != null && path.length > 0) {
+                // Spread the players along the path, then move each of them one block per tick
+                long pos = path[(int) ((i * 7L + tick) % path.length)];
+                ParkourAction.step(playerUuid, pos, tick, this::onCheckpoint);
+            }
+
+            if (heads.length > 0 && (tick + i) % clickInterval == 0) {
+                onClick(playerUuid, heads[random.nextInt(heads.length)]);
+            }
+        }
+
+        tick++;
+    }
+
+    private void onCheckpoint(CheckpointIndex.Zone zone, CheckpointAction response) {
+        if (response == CheckpointAction.GOOD_PATH) {
+            checkpoints++;
+            if (zone.checkpoint().type() == PortalType.END) {
+                finishes++;
+            }
+        }
+    }
+
+    private void onClick(UUID playerUuid, Head head) {
+        clicks++;
+        FinderConfigData config = FinderConfigData.getByHeadUuid(head.owner());
+        if (config != null && FinderPlayerData.tryAddNewEntry(head.pos(), config.variant(), playerUuid)) {
+            FinderConfigData.getFoundEffects(config.variant());
+            founds++;
+        }
+    }
+
+    /**
+     * Walk through the center of every checkpoint in index order, one block per tick
+     */
+    private static long[] path(ParkourConfigData config) {
+        List<CheckpointData> checkpoints = new ArrayList<>(Objects.requireNonNullElse(config.checkpoints(), List.of()));
+        checkpoints.removeIf(checkpoint -> checkpoint.index() == null);
+        checkpoints.sort(Comparator.comparingInt(CheckpointData::index));
+
+        List<Long> steps = new ArrayList<>();
+        BlockPos previous = null;
+        for (CheckpointData checkpoint : checkpoints) {
+            BlockPos center = new BlockPos(
+                    Math.floorDiv(checkpoint.start().getX() + checkpoint.end().getX(), 2),
+                    Math.min(checkpoint.start().getY(), checkpoint.end().getY()),
+                    Math.floorDiv(checkpoint.start().getZ() + checkpoint.end().getZ(), 2)
+            );
+
+            if (previous != null) {
+                int distance = previous.getManhattanDistance(center);
+                for (int step = 1; step < distance; step++) {
+                    float delta = (float) step / distance;
+                    steps.add(BlockPos.asLong(
+                            Math.round(previous.getX() + (center.getX() - previous.getX()) * delta),
+                            Math.round(previous.getY() + (center.getY() - previous.getY()) * delta),
+                            Math.round(previous.getZ() + (center.getZ() - previous.getZ()) * delta)
+                    ));
+                }
+            }
+
+            steps.add(center.asLong());
+            previous = center;
+        }
+
+        return steps.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static double percentile(long[] sorted, double percentile) {
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(percentile * sorted.length) - 1)] / 1e6;
+    }
+
+    private static int upperBound(long[] sorted, long value) {
+        int position = Arrays.binarySearch(sorted, value);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+
+    private static long difference(long before, long after) {
+        return before >= 0 && after >= 0 ? after - before : -1;
+    }
+
+    /**
+     * Read a counter of {@code /proc/self/io}, or -1 when it is not available
+     */
+    private static long readProcessIo(String name) {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/io"))) {
+                if (line.startsWith(name + ":")) {
+                    return Long.parseLong(line.substring(name.length() + 1).trim());
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+
+        return -1;
+    }
+
+    private static long directorySize() throws IOException {
+        if (!Files.exists(EVENTS_DIR)) {
+            return 0;
+        }
+
+        try (Stream<Path> paths = Files.walk(EVENTS_DIR)) {
+            long size = 0;
+            for (Path path : paths.filter(Files::isRegularFile).toList()) {
+                size += Files.size(path);
+            }
+
+            return size;
+        }
+    }
+
+    private record Head(UUID owner, BlockPos pos) {
+    }
+}
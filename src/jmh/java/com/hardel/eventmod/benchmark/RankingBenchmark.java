@@ -0,0 +1,79 @@
+package com.hardel.eventmod.benchmark;
+
+import com.hardel.eventmod.event.EventData;
+import com.hardel.eventmod.event.PlayerDataWriter;
+import com.hardel.eventmod.event.parkour.ParkourLeaderboard;
+import com.hardel.eventmod.event.parkour.ParkourPlayerData;
+import com.hardel.eventmod.event.parkour.WinCondition;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the top of a parkour leaderboard, and moving a player in it when a finish time changes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RankingBenchmark {
+    private static final String VARIANT = "course_0";
+
+    @Param({"100", "1000", "10000"})
+    public int players;
+
+    @Param({"10", "100"})
+    public int howMany;
+
+    private UUID[] playerUuids;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarkSupport.bootstrap();
+        BenchmarkSupport.resetEventsDirectory();
+        // Coalesce the leaderboard index writes like on a running server
+        PlayerDataWriter.start();
+
+        playerUuids = BenchmarkSupport.players(players);
+        ParkourLeaderboard leaderboard = ParkourLeaderboard.create(VARIANT, WinCondition.FIRST_TO_FINISH);
+        for (UUID playerUuid : playerUuids) {
+            leaderboard.update(playerUuid, finished(random.nextInt(100_000)));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        PlayerDataWriter.stop();
+        EventData.closeStores();
+        BenchmarkSupport.resetEventsDirectory();
+    }
+
+    @Benchmark
+    public List<UUID> getRanking() {
+        return ParkourPlayerData.getRanking(VARIANT, howMany);
+    }
+
+    @Benchmark
+    public void updateRank() {
+        UUID playerUuid = playerUuids[next++ % players];
+        ParkourLeaderboard.onUpdate(VARIANT, playerUuid, finished(random.nextInt(100_000)));
+    }
+
+    private static ParkourPlayerData finished(int finishTicks) {
+        return ParkourPlayerData.builder(VARIANT)
+                .isFinished(true)
+                .isParticipating(false)
+                .checkpoints(0)
+                .startTicks(0)
+                .finishTicks(finishTicks)
+                .build();
+    }
+}
@@ -0,0 +1,53 @@
+package com.hardel.eventmod.benchmark;
+
+import com.hardel.eventmod.utils.BlockUtils;
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The containment check of {@code BlockUtils.isPlayerInZone}, from the double coordinates of a player.
+ * A server player cannot be created headless, so the coordinates are read from arrays instead of an entity.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZoneCheckBenchmark {
+    private static final int POSITIONS = 1024;
+    private final double[] xs = new double[POSITIONS];
+    private final double[] ys = new double[POSITIONS];
+    private final double[] zs = new double[POSITIONS];
+    private final BlockPos pos1 = new BlockPos(-16, 60, 32);
+    private final BlockPos pos2 = new BlockPos(16, 70, -32);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < POSITIONS; i++) {
+            xs[i] = random.nextDouble(-32, 32);
+            ys[i] = random.nextDouble(56, 74);
+            zs[i] = random.nextDouble(-48, 48);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS)
+    public int isPlayerInZone() {
+        int inside = 0;
+        for (int i = 0; i < POSITIONS; i++) {
+            int x = BlockUtils.toBlockCoord(xs[i]);
+            int y = BlockUtils.toBlockCoord(ys[i]);
+            int z = BlockUtils.toBlockCoord(zs[i]);
+            if (BlockUtils.isInZone(x, y, z, pos1, pos2)) {
+                inside++;
+            }
+        }
+
+        return inside;
+    }
+}
@@ -0,0 +1,82 @@
+package com.hardel.eventmod.benchmark;
+
+import com.hardel.eventmod.EventMod;
+import com.hardel.eventmod.event.EventData;
+import com.hardel.eventmod.event.PlayerDataWriter;
+import com.hardel.eventmod.event.parkour.ParkourAction;
+import com.hardel.eventmod.event.parkour.ParkourConfigData;
+import com.hardel.eventmod.event.parkour.ParkourPlayerData;
+import com.hardel.eventmod.event.parkour.ParkourPlayerDataCodec;
+import net.minecraft.util.math.BlockPos;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One server tick of the parkour zone evaluation, through {@link ParkourAction#step} as done by
+ * {@code ParkourAction.onTick} without the server: every player takes a step along its course, which triggers
+ * the checkpoints it enters and re-evaluates its participation in every course.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZoneEvaluationBenchmark {
+    @Param({"10", "100", "1000", "5000"})
+    public int players;
+
+    @Param({"1", "10", "50"})
+    public int courses;
+
+    @Param({"10", "100"})
+    public int checkpoints;
+
+    private UUID[] playerUuids;
+    private int tick;
+    private int triggered;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        BenchmarkSupport.bootstrap();
+        BenchmarkSupport.resetEventsDirectory();
+        EventData.registerCodec(EventMod.ParkourKey, new ParkourPlayerDataCodec());
+        // Coalesce the checkpoint writes like on a running server
+        PlayerDataWriter.start();
+        ParkourConfigData.reload();
+        BenchmarkSupport.courses(courses, checkpoints).forEach(ParkourConfigData::addNewConfig);
+
+        playerUuids = BenchmarkSupport.players(players);
+        for (UUID playerUuid : playerUuids) {
+            // Pin and load the player data once, like the preload on join
+            ParkourPlayerData.getCache().pin(playerUuid);
+            ParkourPlayerData.getInstance(playerUuid, ParkourConfigData.getInstance().getFirst().variant());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        PlayerDataWriter.stop();
+        EventData.closeStores();
+        BenchmarkSupport.resetEventsDirectory();
+    }
+
+    @Benchmark
+    public int tick() {
+        int pathLength = BenchmarkSupport.courseLength(checkpoints) + 4;
+        int timers = 0;
+        for (int i = 0; i < players; i++) {
+            int course = i % courses;
+            // Spread the players along the path, and move each of them one block per tick
+            int x = BenchmarkSupport.checkpointX(course, 0) - 2 + (i * 7 + tick) % pathLength;
+            long pos = BlockPos.asLong(x, BenchmarkSupport.GROUND_Y, i % BenchmarkSupport.LANE_WIDTH);
+            timers += ParkourAction.step(playerUuids[i], pos, tick, (zone, response) -> triggered++);
+        }
+
+        tick++;
+        return timers + triggered;
+    }
+}
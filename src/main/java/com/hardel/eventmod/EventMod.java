@@ -1,12 +1,29 @@
 package com.hardel.eventmod;
 
 import com.hardel.eventmod.command.CommandEvent;
+import com.hardel.eventmod.event.ConfigWatcher;
+import com.hardel.eventmod.event.EventConfigs;
+import com.hardel.eventmod.event.EventData;
+import com.hardel.eventmod.event.EventJournal;
+import com.hardel.eventmod.event.PlayerDataWriter;
 import com.hardel.eventmod.event.finder.FinderAction;
+import com.hardel.eventmod.event.finder.FinderConfigData;
+import com.hardel.eventmod.event.finder.FinderPlayerData;
+import com.hardel.eventmod.event.finder.FinderPlayerDataCodec;
 import com.hardel.eventmod.event.parkour.ParkourAction;
+import com.hardel.eventmod.event.parkour.ParkourConfigData;
+import com.hardel.eventmod.event.parkour.ParkourHud;
+import com.hardel.eventmod.event.parkour.ParkourPlayerData;
+import com.hardel.eventmod.event.parkour.ParkourPlayerDataCodec;
+import com.hardel.eventmod.utils.EffectQueue;
+import com.hardel.eventmod.utils.LootTableUtils;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.event.player.UseBlockCallback;
+import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
+import net.minecraft.server.MinecraftServer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -19,8 +36,47 @@ public class EventMod implements ModInitializer {
     public void onInitialize() {
         LOGGER.info("Initializing HeadFinder Mod");
 
+        EventData.registerCodec(ParkourKey, new ParkourPlayerDataCodec());
+        EventData.registerCodec(finderKey, new FinderPlayerDataCodec());
+        EventConfigs.register(ParkourKey, ParkourConfigData::reload);
+        EventConfigs.register(finderKey, FinderConfigData::reload);
+
         UseBlockCallback.EVENT.register(FinderAction::onBlockUse);
         CommandRegistrationCallback.EVENT.register((dispatcher, registryAccess, environment) -> CommandEvent.registerCommands(dispatcher, registryAccess));
         ServerTickEvents.START_SERVER_TICK.register(ParkourAction::onTick);
+        ServerTickEvents.END_SERVER_TICK.register(EffectQueue::flush);
+        ServerTickEvents.END_SERVER_TICK.register(LootTableUtils::flush);
+        ServerPlayConnectionEvents.JOIN.register(ParkourPlayerData::onJoin);
+        ServerPlayConnectionEvents.JOIN.register(FinderPlayerData::onJoin);
+        ServerPlayConnectionEvents.DISCONNECT.register(ParkourAction::onDisconnect);
+        ServerPlayConnectionEvents.DISCONNECT.register(ParkourHud::onDisconnect);
+        ServerPlayConnectionEvents.DISCONNECT.register(ParkourPlayerData::onDisconnect);
+        ServerPlayConnectionEvents.DISCONNECT.register(FinderPlayerData::onDisconnect);
+        ServerLifecycleEvents.SERVER_STARTING.register(server -> {
+            EventData.recoverJournals();
+            PlayerDataWriter.start();
+            EventConfigs.reloadAll().thenRun(() -> server.execute(() -> onConfigsLoaded(server)));
+            ConfigWatcher.start(server, () -> onConfigsLoaded(server));
+        });
+        ServerLifecycleEvents.END_DATA_PACK_RELOAD.register((server, resourceManager, success) -> {
+            LootTableUtils.invalidate();
+            FinderConfigData.validateRewards(server);
+        });
+        ServerLifecycleEvents.SERVER_STOPPING.register(LootTableUtils::drain);
+        ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
+            ConfigWatcher.stop();
+            PlayerDataWriter.stop();
+            EventJournal.closeAll();
+            EventData.closeStores();
+            LootTableUtils.clear();
+        });
+    }
+
+    /**
+     * Run the hooks depending on the loaded configs, called on the server thread after every config load
+     */
+    public static void onConfigsLoaded(MinecraftServer server) {
+        ParkourPlayerData.loadLeaderboards(server);
+        FinderConfigData.validateRewards(server);
     }
 }
@@ -1,11 +1,18 @@
 package com.hardel.eventmod.command;
 
 import com.hardel.eventmod.EventMod;
+import com.hardel.eventmod.event.EventConfigs;
 import com.hardel.eventmod.event.EventData;
+import com.hardel.eventmod.event.EventStats;
+import com.hardel.eventmod.event.PlayerDataCache;
+import com.hardel.eventmod.event.VariantIndex;
 import com.hardel.eventmod.event.finder.FinderConfigData;
 import com.hardel.eventmod.event.finder.FinderPlayerData;
 import com.hardel.eventmod.event.parkour.*;
 import com.hardel.eventmod.utils.BlockUtils;
+import com.hardel.eventmod.utils.LatencyHistogram;
+import com.hardel.eventmod.utils.LootTableUtils;
+import com.mojang.authlib.GameProfile;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.IntegerArgumentType;
 import com.mojang.brigadier.arguments.StringArgumentType;
@@ -26,7 +33,8 @@ import net.minecraft.text.Text;
 import net.minecraft.util.math.BlockPos;
 
 import java.util.List;
-import java.util.Objects;
+import java.util.Locale;
+import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -56,12 +64,13 @@ public class CommandEvent {
     };
 
     public static CompletableFuture<Suggestions> suggestEventVariants(SuggestionsBuilder builder, String event) {
-        List<String> eventVariants = EventData.getAllVariantNameFromEvent(event);
-
-        for (String variant : eventVariants) {
-            builder.suggest(variant);
-        }
+        VariantIndex variants = switch (event) {
+            case EventMod.ParkourKey -> ParkourConfigData.getVariantIndex();
+            case EventMod.finderKey -> FinderConfigData.getVariantIndex();
+            default -> VariantIndex.EMPTY;
+        };
 
+        variants.forEachWithPrefix(builder.getRemaining(), builder::suggest);
         return builder.buildFuture();
     }
 
@@ -300,8 +309,14 @@ public class CommandEvent {
                                         )
                                 )
                         )
+                        .then(literal("export")
+                                .executes(context -> executeExportPlayers(context.getSource(), EventMod.ParkourKey))
+                        )
                 )
                 .then(literal(EventMod.finderKey)
+                        .then(literal("export")
+                                .executes(context -> executeExportPlayers(context.getSource(), EventMod.finderKey))
+                        )
                         .then(literal("get")
                                 .then(argument("target", EntityArgumentType.player())
                                         .then(argument("variant", StringArgumentType.word()).suggests((context, builder) -> suggestEventVariants(builder, EventMod.finderKey))
@@ -338,10 +353,10 @@ public class CommandEvent {
                                         )
                                         .then(literal("reward")
                                                 .then(argument("reward", RegistryEntryArgumentType.lootTable(commandRegistryAccess))
-                                                        .suggests(SUGGESTION_PROVIDER).executes(context -> executeFinderConfigModification(
+                                                        .suggests(SUGGESTION_PROVIDER).executes(context -> executeFinderRewardModification(
                                                                 context.getSource(),
                                                                 StringArgumentType.getString(context, "variant"),
-                                                                FinderConfigData.builder().reward(RegistryEntryArgumentType.getLootTable(context, "reward").getIdAsString())
+                                                                RegistryEntryArgumentType.getLootTable(context, "reward")
                                                         ))
                                                 )
                                         )
@@ -382,9 +397,80 @@ public class CommandEvent {
                                 )
                         )
                 )
+                .then(literal("cache")
+                        .executes(context -> executeCacheStats(context.getSource()))
+                )
+                .then(literal("reload")
+                        .executes(context -> executeReloadConfigs(context.getSource()))
+                )
+                .then(literal("stats")
+                        .executes(context -> executeStats(context.getSource()))
+                        .then(literal("reset")
+                                .executes(context -> executeResetStats(context.getSource()))
+                        )
+                )
         );
     }
 
+    // Configs
+    private static int executeReloadConfigs(ServerCommandSource source) {
+        source.sendFeedback(() -> Text.of("Reloading event configs..."), false);
+        EventConfigs.reloadAll().thenAccept(failed -> source.getServer().execute(() -> {
+            EventMod.onConfigsLoaded(source.getServer());
+            if (failed.isEmpty()) {
+                source.sendFeedback(() -> Text.of("Reloaded event configs"), true);
+            } else {
+                source.sendError(Text.of("Failed to reload the configs of " + String.join(", ", failed) + ", see the server log"));
+            }
+        }));
+
+        return 1;
+    }
+
+    // Stats
+    private static int executeStats(ServerCommandSource source) {
+        long windowSeconds = EventStats.getWindowNanos() / 1_000_000_000L;
+        source.sendFeedback(() -> Text.of("Stats of the last " + windowSeconds + " seconds:"), false);
+        for (EventStats section : EventStats.values()) {
+            LatencyHistogram.Snapshot latencies = section.getLatencies();
+            String line = section.getDisplayName() + ": " + latencies.count() + " calls, " + formatMillis(section.getTotalNanos()) + " total"
+                    + ", p50 " + formatMillis(latencies.percentile(0.5))
+                    + ", p99 " + formatMillis(latencies.percentile(0.99))
+                    + ", max " + formatMillis(latencies.max())
+                    + ", " + section.getBytes() + " bytes, " + section.getHits() + " hits, " + section.getMisses() + " misses";
+            source.sendFeedback(() -> Text.of(line), false);
+        }
+
+        return 1;
+    }
+
+    private static int executeResetStats(ServerCommandSource source) {
+        EventStats.resetAll();
+        source.sendFeedback(() -> Text.of("Reset event stats"), true);
+        return 1;
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f ms", nanos / 1_000_000.0);
+    }
+
+    // Player data
+    private static int executeCacheStats(ServerCommandSource source) {
+        sendCacheStats(source, EventMod.ParkourKey, ParkourPlayerData.getCache());
+        sendCacheStats(source, EventMod.finderKey, FinderPlayerData.getCache());
+        return ParkourPlayerData.getCache().size() + FinderPlayerData.getCache().size();
+    }
+
+    private static void sendCacheStats(ServerCommandSource source, String event, PlayerDataCache<?> cache) {
+        source.sendFeedback(() -> Text.of(event + ": " + cache.size() + " players, " + cache.getHits() + " hits, " + cache.getMisses() + " misses, " + cache.getEvictions() + " evictions"), false);
+    }
+
+    private static int executeExportPlayers(ServerCommandSource source, String event) {
+        int exported = EventData.exportPlayerEventData(event);
+        source.sendFeedback(() -> Text.of("Exported " + exported + " players of event " + event + " to events/export/" + event), false);
+        return exported;
+    }
+
     // Finder Event
     private static int executeGetFinderCount(ServerCommandSource source, ServerPlayerEntity targetPlayer, String variant) {
         int dirtDestroyedCount = FinderPlayerData.getFoundBlocksCountByVariant(variant, targetPlayer.getUuid());
@@ -399,7 +485,17 @@ public class CommandEvent {
     }
 
     private static int executeCreateFinder(ServerCommandSource source, String variant, BlockPos block, RegistryEntry<LootTable> reward) {
+        if (!LootTableUtils.isValidReward(source.getServer(), reward.getIdAsString())) {
+            source.sendError(Text.of("Unknown reward loot table: " + reward.getIdAsString()));
+            return 0;
+        }
+
         UUID uuid = BlockUtils.getHeadUuid(source.getWorld(), block);
+        if (uuid == null) {
+            source.sendError(Text.of("No player head with an owner at " + block.toShortString()));
+            return 0;
+        }
+
         FinderConfigData config = FinderConfigData.builder().withDefaults(variant, uuid).reward(reward.getIdAsString()).build();
 
         boolean isCreated = FinderConfigData.addNewConfig(config);
@@ -413,6 +509,15 @@ public class CommandEvent {
         return isRemoved ? 1 : 0;
     }
 
+    private static int executeFinderRewardModification(ServerCommandSource source, String variant, RegistryEntry<LootTable> reward) {
+        if (!LootTableUtils.isValidReward(source.getServer(), reward.getIdAsString())) {
+            source.sendError(Text.of("Unknown reward loot table: " + reward.getIdAsString()));
+            return 0;
+        }
+
+        return executeFinderConfigModification(source, variant, FinderConfigData.builder().reward(reward.getIdAsString()));
+    }
+
     private static int executeFinderConfigModification(ServerCommandSource source, String variant, FinderConfigData.Builder builder) {
         boolean isUpdated = FinderConfigData.modifyExistingConfig(variant, builder.build());
         source.sendFeedback(() -> Text.of("Modified finder config: " + variant), false);
@@ -497,17 +602,17 @@ public class CommandEvent {
 
     // Parkour ranking
     private static int executeParkourRanking(ServerCommandSource source, String variant, int howMany) {
-        List<UUID> topRanking = ParkourPlayerData.getRanking(variant, howMany);
+        List<ParkourLeaderboard.Entry> topRanking = ParkourPlayerData.getRankingEntries(variant, howMany);
         for (int i = 0; i < topRanking.size(); i++) {
-            UUID player = topRanking.get(i);
-
-
-            ParkourPlayerData data = ParkourPlayerData.getInstance(player, variant);
-            String name = Objects.requireNonNull(source.getServer().getPlayerManager().getPlayer(player)).getName().getString();
-            int second = (data.finishTicks() - data.startTicks()) / 20;
+            ParkourLeaderboard.Entry entry = topRanking.get(i);
+            String name = Optional.ofNullable(source.getServer().getUserCache())
+                    .flatMap(userCache -> userCache.getByUuid(entry.playerUuid()))
+                    .map(GameProfile::getName)
+                    .orElse(entry.playerUuid().toString());
+            String time = entry.finished() ? "in " + entry.durationTicks() / 20 + " seconds" : "not finished";
             int finalI = i;
 
-            source.sendFeedback(() -> Text.of("Position " + (finalI + 1) + ", in " + second + " seconds, for player " + name), false);
+            source.sendFeedback(() -> Text.of("Position " + (finalI + 1) + ", " + time + ", for player " + name), false);
         }
 
         return topRanking.size();
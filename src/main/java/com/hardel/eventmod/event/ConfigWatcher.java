@@ -0,0 +1,114 @@
+package com.hardel.eventmod.event;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watch the config directory and reload the configs of an event when its file is edited by hand.
+ * Events are collected until the directory stays quiet for {@code eventmod.config_watch_debounce} milliseconds,
+ * since editors often write a file in several steps. The reload runs on the watcher thread, and each event
+ * only swaps the variants that actually changed, so the writes of the mod itself cost a parse and nothing more.
+ * Once a batch changed a config the post-load hooks are posted to the server thread, like after the startup load,
+ * so the files written by the mod itself, which hold the configs already published, do not run them.
+ */
+public class ConfigWatcher {
+    private static final Logger LOGGER = LogManager.getLogger(ConfigWatcher.class);
+    private static final long DEBOUNCE = Long.getLong("eventmod.config_watch_debounce", 250L);
+    private static final String CONFIG_EXTENSION = ".json";
+    private static WatchService watchService;
+
+    /**
+     * Start watching the config directory, called when the server starts
+     *
+     * @param serverExecutor runs the post-load hooks on the server thread
+     * @param onReload       the post-load hooks, run after every batch that changed the configs
+     */
+    public static synchronized void start(Executor serverExecutor, Runnable onReload) {
+        if (watchService != null) {
+            return;
+        }
+
+        Path directory = EventData.getConfigDirectory();
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            LOGGER.error("Failed to watch config directory: {}", directory, e);
+            return;
+        }
+
+        WatchService service = watchService;
+        Thread thread = new Thread(() -> run(service, serverExecutor, onReload), "EventMod Config Watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop watching, called when the server stops
+     */
+    public static synchronized void stop() {
+        if (watchService == null) {
+            return;
+        }
+
+        try {
+            // Wakes up the watcher thread, which exits on the closed service
+            watchService.close();
+        } catch (IOException e) {
+            LOGGER.error("Failed to close config watcher", e);
+        }
+
+        watchService = null;
+    }
+
+    private static void run(WatchService service, Executor serverExecutor, Runnable onReload) {
+        Set<String> events = new LinkedHashSet<>();
+        try {
+            while (true) {
+                collect(service.take(), events);
+
+                WatchKey key;
+                while ((key = service.poll(DEBOUNCE, TimeUnit.MILLISECONDS)) != null) {
+                    collect(key, events);
+                }
+
+                boolean changed = false;
+                for (String event : events) {
+                    LOGGER.info("Config file of event {} changed, reloading it", event);
+                    changed |= EventConfigs.reload(event);
+                }
+
+                if (changed) {
+                    serverExecutor.execute(onReload);
+                }
+
+                events.clear();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // Stopped
+        }
+    }
+
+    private static void collect(WatchKey key, Set<String> events) {
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                events.addAll(EventConfigs.getEvents());
+                continue;
+            }
+
+            String fileName = event.context().toString();
+            if (fileName.endsWith(CONFIG_EXTENSION)) {
+                events.add(fileName.substring(0, fileName.length() - CONFIG_EXTENSION.length()));
+            }
+        }
+
+        key.reset();
+    }
+}
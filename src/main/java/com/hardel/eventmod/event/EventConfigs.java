@@ -0,0 +1,87 @@
+package com.hardel.eventmod.event;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Lifecycle of the event configs. Each event registers how to reload its configs, they are all loaded once
+ * on a background thread when the server starts, then only reloaded on demand.
+ * Until its first load completes an event reports itself as not loaded, and the tick logic skips it.
+ */
+public class EventConfigs {
+    private static final Logger LOGGER = LogManager.getLogger(EventConfigs.class);
+    private static final Executor LOADER = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("EventMod Config Loader").factory());
+    private static final Map<String, BooleanSupplier> reloaders = new ConcurrentHashMap<>();
+
+    /**
+     * Register how to reload the configs of an event, the reloader must publish the new configs atomically
+     * and tell whether they changed
+     */
+    public static void register(String event, BooleanSupplier reloader) {
+        reloaders.put(event, reloader);
+    }
+
+    /**
+     * Get every event with registered configs
+     */
+    public static Set<String> getEvents() {
+        return Set.copyOf(reloaders.keySet());
+    }
+
+    /**
+     * Reload the configs of every event on a background thread
+     *
+     * @return completed once every event is reloaded, with the events that failed to reload
+     */
+    public static CompletableFuture<List<String>> reloadAll() {
+        return CompletableFuture.supplyAsync(() -> {
+            List<String> failed = new ArrayList<>();
+            for (Map.Entry<String, BooleanSupplier> entry : reloaders.entrySet()) {
+                if (reload(entry.getKey(), entry.getValue()) == Result.FAILED) {
+                    failed.add(entry.getKey());
+                }
+            }
+
+            return failed;
+        }, LOADER);
+    }
+
+    /**
+     * Reload the configs of one event on the caller thread
+     *
+     * @return true if the configs changed, false if they are the same, the event is unknown or failed to reload
+     */
+    public static boolean reload(String event) {
+        BooleanSupplier reloader = reloaders.get(event);
+        return reloader != null && reload(event, reloader) == Result.CHANGED;
+    }
+
+    private static Result reload(String event, BooleanSupplier reloader) {
+        long start = System.nanoTime();
+        try {
+            boolean changed = reloader.getAsBoolean();
+            EventStats.CONFIG_LOAD.record(start);
+            LOGGER.info("Loaded configs of event {} in {} ms{}", event, (System.nanoTime() - start) / 1_000_000, changed ? "" : ", nothing changed");
+            return changed ? Result.CHANGED : Result.UNCHANGED;
+        } catch (RuntimeException e) {
+            LOGGER.error("Failed to load configs of event {}, keeping the previous ones", event, e);
+            return Result.FAILED;
+        }
+    }
+
+    private enum Result {
+        CHANGED,
+        UNCHANGED,
+        FAILED
+    }
+}
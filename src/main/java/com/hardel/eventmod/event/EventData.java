@@ -6,18 +6,27 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.UUID;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.util.*;
 
 public class EventData {
     public static final Logger LOGGER = LogManager.getLogger(EventData.class);
     private static final String EVENTS_DIR_PATH = "events";
     private static final String CONFIG_DIR_PATH = EVENTS_DIR_PATH + "/config";
     private static final String PLAYERS_DIR_PATH = EVENTS_DIR_PATH + "/players";
+    private static final String JOURNAL_EXTENSION = ".journal";
+    private static final String SEGMENT_EXTENSION = ".segment";
+    private static final String INDEX_DIR_PATH = EVENTS_DIR_PATH + "/index";
+    private static final String EXPORT_DIR_PATH = EVENTS_DIR_PATH + "/export";
+    private static final PlayerDataCodec JSON_CODEC = new JsonPlayerDataCodec();
+    private static final Map<Byte, PlayerDataCodec> codecsById = new HashMap<>(Map.of(JSON_CODEC.id(), JSON_CODEC));
+    private static final Map<String, PlayerDataCodec> codecsByEvent = new HashMap<>();
+    private static final Map<String, SegmentStore> stores = new HashMap<>();
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
     private static final Object fileLock = new Object();
 
@@ -28,15 +37,29 @@ public class EventData {
      * @return containing the data from the file
      */
     private static JsonArray readJsonFile(Path path) {
-        if (Files.exists(path)) {
-            try {
-                return GSON.fromJson(Files.readString(path), JsonArray.class);
-            } catch (IOException e) {
-                LOGGER.error("Failed to read data from file: {}", path, e);
+        return Objects.requireNonNullElseGet(readJsonFile(path, JsonArray.class), JsonArray::new);
+    }
+
+    /**
+     * Read data of the given type from a json file
+     *
+     * @return the data from the file, or null if the file does not exist or cannot be read
+     */
+    private static <T extends JsonElement> T readJsonFile(Path path, Class<T> type) {
+        long start = System.nanoTime();
+        try {
+            if (Files.exists(path)) {
+                byte[] content = Files.readAllBytes(path);
+                EventStats.DATA_READ.addBytes(content.length);
+                return GSON.fromJson(new String(content, StandardCharsets.UTF_8), type);
             }
+        } catch (IOException e) {
+            LOGGER.error("Failed to read data from file: {}", path, e);
+        } finally {
+            EventStats.DATA_READ.record(start);
         }
 
-        return new JsonArray();
+        return null;
     }
 
     /**
@@ -45,11 +68,23 @@ public class EventData {
      * @param path the path to write the data to
      * @param data the data to write
      */
-    private static void writeJsonFile(Path path, JsonArray data) {
+    private static void writeJsonFile(Path path, JsonElement data) {
+        long start = System.nanoTime();
         try {
-            Files.writeString(path, GSON.toJson(data));
+            // Write next to the target then move it over, so a crash never leaves a half written file
+            Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+            byte[] content = GSON.toJson(data).getBytes(StandardCharsets.UTF_8);
+            Files.write(tempPath, content);
+            EventStats.DATA_WRITE.addBytes(content.length);
+            try {
+                Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+            }
         } catch (IOException e) {
             LOGGER.error("Failed to write data to file: {}", path, e);
+        } finally {
+            EventStats.DATA_WRITE.record(start);
         }
     }
 
@@ -66,6 +101,15 @@ public class EventData {
         }
     }
 
+    /**
+     * Get the directory of the config files, creating it if needed
+     */
+    public static Path getConfigDirectory() {
+        Path path = Paths.get(CONFIG_DIR_PATH);
+        createDirectories(path);
+        return path;
+    }
+
     /**
      * Load the config data for a specific event
      *
@@ -96,6 +140,99 @@ public class EventData {
         }
     }
 
+    /**
+     * Load an index file of a specific event.
+     * The index is only returned if it covers every change compacted out of the journal, the players changed since,
+     * listed by {@link #getChangedPlayers}, must still be applied on top of it.
+     *
+     * @param event the event of the index
+     * @param name  the name of the index
+     * @return containing the index data, or null if the index was never saved or is older than the journal
+     */
+    public static JsonArray loadIndexEventData(String event, String name) {
+        JsonElement index = readJsonFile(getIndexPath(event, name), JsonElement.class);
+        if (index == null) {
+            return null;
+        }
+
+        // Indexes saved before the sequence was recorded have no way to prove they are up to date
+        JsonObject object = index.isJsonObject() ? index.getAsJsonObject() : null;
+        long sequence = object != null && object.has("sequence") ? object.get("sequence").getAsLong() : -1;
+        if (sequence < getJournal(event).getBaseSequence()) {
+            LOGGER.info("Index {} for event {} is older than the journal and must be rebuilt", name, event);
+            return null;
+        }
+
+        return object.getAsJsonArray("entries");
+    }
+
+    /**
+     * Save an index file of a specific event
+     *
+     * @param event    the event of the index
+     * @param name     the name of the index
+     * @param sequence the journal sequence read before the index data was built, from {@link #getJournalSequence}
+     * @param data     containing the index data
+     */
+    public static void saveIndexEventData(String event, String name, long sequence, JsonArray data) {
+        JsonObject index = new JsonObject();
+        index.addProperty("sequence", sequence);
+        index.add("entries", data);
+
+        Path path = getIndexPath(event, name);
+        createDirectories(path.getParent());
+        writeJsonFile(path, index);
+    }
+
+    /**
+     * Get the sequence of the last record written to the journal of the event
+     */
+    public static long getJournalSequence(String event) {
+        return getJournal(event).getSequence();
+    }
+
+    /**
+     * Get every player whose data changed since the journal of the event was last compacted
+     */
+    public static List<UUID> getChangedPlayers(String event) {
+        Set<UUID> players = new LinkedHashSet<>(getJournal(event).getPlayers());
+        players.addAll(PlayerDataWriter.getPendingPlayers(event));
+        return new ArrayList<>(players);
+    }
+
+    /**
+     * Get the path of an index file, the name is percent-encoded so it always stays a single file name
+     * inside the index directory of the event
+     */
+    private static Path getIndexPath(String event, String name) {
+        StringBuilder fileName = new StringBuilder();
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            char c = (char) (b & 0xFF);
+            if (c < 0x80 && (Character.isLetterOrDigit(c) || c == '_' || c == '-')) {
+                fileName.append(c);
+            } else {
+                fileName.append('%').append(String.format(Locale.ROOT, "%02X", b & 0xFF));
+            }
+        }
+
+        return Paths.get(INDEX_DIR_PATH, event, fileName + ".json");
+    }
+
+    /**
+     * Delete an index file of a specific event
+     *
+     * @param event the event of the index
+     * @param name  the name of the index
+     */
+    public static void deleteIndexEventData(String event, String name) {
+        PlayerDataWriter.discardIndex(event, name);
+        try {
+            Files.deleteIfExists(getIndexPath(event, name));
+        } catch (IOException e) {
+            LOGGER.error("Failed to delete index {} for event {}", name, event, e);
+        }
+    }
+
     /**
      * Load data from players for a specific event
      *
@@ -104,42 +241,62 @@ public class EventData {
      * @return containing the player data for the event
      */
     public static JsonArray loadPlayerEventData(UUID playerUuid, String event) {
-        synchronized (fileLock) {
-            Path path = Paths.get(PLAYERS_DIR_PATH, event, playerUuid.toString() + ".json");
-            createDirectories(path.getParent());
-            JsonElement playerData = readJsonFile(path);
+        long start = System.nanoTime();
+        try {
+            // Served from memory counts as a hit, only a read of the store counts as a miss
+            PlayerDataWriter.PendingWrite pendingData = PlayerDataWriter.peek(playerUuid, event);
+            if (pendingData != null && pendingData.snapshot() != null) {
+                EventStats.DATA_READ.hit();
+                return EventJournal.merge(pendingData.snapshot(), pendingData.appended());
+            }
 
-            if (playerData.isJsonArray()) {
-                return playerData.getAsJsonArray();
+            JsonArray data = getJournal(event).get(playerUuid);
+            if (data != null) {
+                EventStats.DATA_READ.hit();
             } else {
-                return new JsonArray();
+                EventStats.DATA_READ.miss();
+                data = loadStoredPlayerEventData(playerUuid, event);
             }
+
+            return pendingData != null ? EventJournal.merge(data, pendingData.appended()) : data;
+        } finally {
+            EventStats.DATA_READ.record(start);
         }
     }
 
     /**
-     * Force load data from every file in the players directory for a specific event
+     * Load the player data from the store only, ignoring the pending writes and the journal
      */
-    public static List<UUID> forceLoadAllPlayerEventData(String event) {
-        synchronized (fileLock) {
-            Path path = Paths.get(PLAYERS_DIR_PATH, event);
-            createDirectories(path);
-            List<UUID> playerData = new ArrayList<>();
-
-            File[] files = path.toFile().listFiles();
-            if (files != null) {
-                for (File file : files) {
-                    String fileName = file.getName();
-                    if (fileName.endsWith(".json")) {
-                        playerData.add(UUID.fromString(fileName.substring(0, fileName.length() - 5)));
-                    }
-                }
+    static JsonArray loadStoredPlayerEventData(UUID playerUuid, String event) {
+        try {
+            SegmentStore.Record record = getStore(event).read(playerUuid);
+            if (record != null) {
+                EventStats.DATA_READ.addBytes(record.payload().length);
             }
 
-            return playerData;
+            return record != null ? decode(record.encoding(), record.payload()) : new JsonArray();
+        } catch (IOException e) {
+            LOGGER.error("Failed to read player data of {} for event {}", playerUuid, event, e);
+            return new JsonArray();
         }
     }
 
+    /**
+     * Get every player having data for a specific event, from the store index without touching the disk
+     */
+    public static List<UUID> forceLoadAllPlayerEventData(String event) {
+        Set<UUID> players = new LinkedHashSet<>();
+        try {
+            players.addAll(getStore(event).getPlayers());
+        } catch (IOException e) {
+            LOGGER.error("Failed to list players for event {}", event, e);
+        }
+
+        players.addAll(getJournal(event).getPlayers());
+        players.addAll(PlayerDataWriter.getPendingPlayers(event));
+        return new ArrayList<>(players);
+    }
+
     /**
      * Save the player data to the event file
      *
@@ -148,29 +305,231 @@ public class EventData {
      * @param eventData  containing the player data for the specific event
      */
     public static void savePlayerEventData(UUID playerUuid, String event, JsonArray eventData) {
-        synchronized (fileLock) {
-            Path path = Paths.get(PLAYERS_DIR_PATH, event, playerUuid.toString() + ".json");
-            createDirectories(path.getParent());
-            writeJsonFile(path, eventData);
+        long start = System.nanoTime();
+        try {
+            PlayerDataCodec codec = getCodec(event);
+            byte[] payload = codec.encode(eventData);
+            getStore(event).write(playerUuid, codec.id(), payload);
+            EventStats.DATA_WRITE.addBytes(payload.length);
+        } catch (IOException e) {
+            LOGGER.error("Failed to write player data of {} for event {}", playerUuid, event, e);
+        } finally {
+            EventStats.DATA_WRITE.record(start);
+        }
+    }
+
+    /**
+     * Force the saved player data of the event to the disk
+     *
+     * @param event the event to sync
+     */
+    public static void syncPlayerEventData(String event) {
+        try {
+            getStore(event).sync();
+        } catch (IOException e) {
+            LOGGER.error("Failed to sync player data for event {}", event, e);
         }
     }
 
     /**
-     * Get all the variant names from the event file
+     * Close every opened player store, called when the server stops after the journals are compacted
+     */
+    public static void closeStores() {
+        synchronized (stores) {
+            for (Map.Entry<String, SegmentStore> entry : stores.entrySet()) {
+                try {
+                    entry.getValue().close();
+                } catch (IOException e) {
+                    LOGGER.error("Failed to close player store for event {}", entry.getKey(), e);
+                }
+            }
+
+            stores.clear();
+        }
+    }
+
+    /**
+     * Write a pending update of the player to the journal of the event, the store is only written on compaction
      *
-     * @param event the event to get the variant names for
-     * @return containing the variant names
+     * @param playerUuid of the player
+     * @param event      the event to save data for
+     * @param snapshot   the full player data for the event, or null if only entries were appended
+     * @param appended   the entries added after the snapshot
+     */
+    static void journalPlayerEventData(UUID playerUuid, String event, JsonArray snapshot, JsonArray appended) {
+        long start = System.nanoTime();
+        EventJournal journal = getJournal(event);
+        if (snapshot != null) {
+            journal.put(playerUuid, snapshot);
+        }
+
+        if (!appended.isEmpty()) {
+            journal.append(playerUuid, appended);
+        }
+
+        EventStats.DATA_WRITE.record(start);
+    }
+
+    /**
+     * Queue entries to be added to the player data by the background writer, without rewriting the existing entries.
+     * Entries are kept as a set, an entry added twice is stored once.
+     * An event appending this way must queue its full snapshots through {@link #queuePlayerEventData} as well,
+     * so both kinds of updates stay in order.
+     *
+     * @param playerUuid of the player
+     * @param event      the event to save data for
+     * @param entries    the entries to add to the player data for the event, must not be modified afterward
+     */
+    public static void appendPlayerEventData(UUID playerUuid, String event, JsonArray entries) {
+        PlayerDataWriter.markAppend(playerUuid, event, entries);
+    }
+
+    /**
+     * Replay every journal left in the players directory over the stores, called when the server starts
      */
-    public static List<String> getAllVariantNameFromEvent(String event) {
-        JsonArray finderConfig = loadConfigEventData(event);
+    public static void recoverJournals() {
+        Path path = Paths.get(PLAYERS_DIR_PATH);
+        createDirectories(path);
 
-        List<String> variantNames = new ArrayList<>();
-        for (JsonElement finder : finderConfig) {
-            JsonObject finderObj = finder.getAsJsonObject();
-            String variantName = finderObj.get("variant").getAsString();
-            variantNames.add(variantName);
+        File[] files = path.toFile().listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String fileName = file.getName();
+                if (fileName.endsWith(JOURNAL_EXTENSION)) {
+                    getJournal(fileName.substring(0, fileName.length() - JOURNAL_EXTENSION.length()));
+                }
+            }
         }
+    }
 
-        return variantNames;
+    private static SegmentStore getStore(String event) throws IOException {
+        synchronized (stores) {
+            SegmentStore store = stores.get(event);
+            if (store == null) {
+                store = SegmentStore.open(Paths.get(PLAYERS_DIR_PATH, event + SEGMENT_EXTENSION));
+                importLegacyPlayerData(event, store);
+                stores.put(event, store);
+            }
+
+            return store;
+        }
+    }
+
+    /**
+     * Import the player files of the legacy layout, {@code events/players/<event>/<uuid>.json}, into the store.
+     * Imported files are renamed so they are not imported twice, dropping a file there imports it on the next start.
+     */
+    private static void importLegacyPlayerData(String event, SegmentStore store) throws IOException {
+        File[] files = Paths.get(PLAYERS_DIR_PATH, event).toFile().listFiles();
+        if (files == null) {
+            return;
+        }
+
+        int imported = 0;
+        for (File file : files) {
+            String fileName = file.getName();
+            if (!fileName.endsWith(".json")) {
+                continue;
+            }
+
+            UUID playerUuid;
+            try {
+                playerUuid = UUID.fromString(fileName.substring(0, fileName.length() - 5));
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Skipping legacy player file not named after a UUID: {}", file);
+                continue;
+            }
+
+            JsonArray playerData = Objects.requireNonNullElseGet(readJsonFile(file.toPath()), JsonArray::new);
+            PlayerDataCodec codec = getCodec(event);
+            store.write(playerUuid, codec.id(), codec.encode(playerData));
+            Files.move(file.toPath(), file.toPath().resolveSibling(fileName + ".imported"), StandardCopyOption.REPLACE_EXISTING);
+            imported++;
+        }
+
+        if (imported > 0) {
+            store.sync();
+            LOGGER.info("Imported {} player files into the store of event {}", imported, event);
+        }
+    }
+
+    /**
+     * Register the binary codec of an event, used unless {@code eventmod.codec.<event>} is set to {@code json}
+     *
+     * @param event the event of the codec
+     * @param codec the codec to encode the player data with
+     */
+    public static void registerCodec(String event, PlayerDataCodec codec) {
+        codecsById.put(codec.id(), codec);
+        if (!"json".equals(System.getProperty("eventmod.codec." + event))) {
+            codecsByEvent.put(event, codec);
+        }
+    }
+
+    /**
+     * Encode the player data with the codec of the event, prefixed by the codec id
+     */
+    static byte[] encode(String event, JsonArray data) {
+        PlayerDataCodec codec = getCodec(event);
+        byte[] payload = codec.encode(data);
+        byte[] encoded = new byte[payload.length + 1];
+        encoded[0] = codec.id();
+        System.arraycopy(payload, 0, encoded, 1, payload.length);
+        return encoded;
+    }
+
+    /**
+     * Decode player data prefixed by its codec id
+     */
+    static JsonArray decode(byte[] encoded) {
+        return decode(encoded[0], Arrays.copyOfRange(encoded, 1, encoded.length));
+    }
+
+    private static JsonArray decode(byte codecId, byte[] payload) {
+        PlayerDataCodec codec = codecsById.get(codecId);
+        if (codec == null) {
+            LOGGER.error("Unknown player data codec: {}", codecId);
+            return new JsonArray();
+        }
+
+        return codec.decode(payload);
+    }
+
+    private static PlayerDataCodec getCodec(String event) {
+        return codecsByEvent.getOrDefault(event, JSON_CODEC);
+    }
+
+    /**
+     * Export the data of every player of the event as pretty printed JSON files, for debugging.
+     * The files use the legacy layout, so copying them into the players directory imports them back.
+     *
+     * @param event the event to export
+     * @return the number of exported players
+     */
+    public static int exportPlayerEventData(String event) {
+        Path path = Paths.get(EXPORT_DIR_PATH, event);
+        createDirectories(path);
+
+        List<UUID> players = forceLoadAllPlayerEventData(event);
+        for (UUID playerUuid : players) {
+            writeJsonFile(path.resolve(playerUuid + ".json"), loadPlayerEventData(playerUuid, event));
+        }
+
+        return players.size();
+    }
+
+    private static EventJournal getJournal(String event) {
+        return EventJournal.get(event, Paths.get(PLAYERS_DIR_PATH, event + JOURNAL_EXTENSION));
+    }
+
+    /**
+     * Queue the player data to be written by the background writer, repeated saves of the same player are coalesced
+     *
+     * @param playerUuid of the player
+     * @param event      the event to save data for
+     * @param eventData  containing the player data for the specific event, must not be modified afterward
+     */
+    public static void queuePlayerEventData(UUID playerUuid, String event, JsonArray eventData) {
+        PlayerDataWriter.mark(playerUuid, event, eventData);
     }
 }
@@ -0,0 +1,380 @@
+package com.hardel.eventmod.event;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of player data changes for one event.
+ * Every change is appended as a checksummed record, either the full new state of the player or only the entries
+ * added to it. Only what was journaled since the last compaction is kept in memory, the last full state of each player
+ * if any and the entries appended after it, and compaction merges them with the stored state.
+ * Once the journal grows past {@code eventmod.journal_compact_records} records the background writer compacts it
+ * into the player store and truncates it. Opening a journal replays it over the player store, which recovers after a crash.
+ * Every record has a sequence number that survives compactions, so derived indexes can tell which changes they miss.
+ * <p>
+ * A full state record is the delta of the events whose player data is a few small entries, like the parkour progress
+ * of each variant: the encoded state is about the size of the changed entry, and replaying it is a plain overwrite,
+ * so no per-event diff format is needed. Data that keeps growing, like the heads found, is journaled as appended entries.
+ */
+public class EventJournal {
+    private static final Logger LOGGER = LogManager.getLogger(EventJournal.class);
+    private static final int COMPACT_RECORDS = Integer.getInteger("eventmod.journal_compact_records", 1024);
+    private static final int HEADER_SIZE = Integer.BYTES + Integer.BYTES + Byte.BYTES + Long.BYTES + Long.BYTES;
+    private static final byte OP_PUT = 0;
+    private static final byte OP_APPEND = 1;
+    // Written first after each truncation, carries the sequence reached when the journal was last compacted
+    private static final byte OP_SEQUENCE = 2;
+    private static final UUID NO_PLAYER = new UUID(0L, 0L);
+    private static final Map<String, EventJournal> journals = new HashMap<>();
+
+    private final String event;
+    private final Path path;
+    private final Map<UUID, Change> changes = new HashMap<>();
+    private FileChannel channel;
+    private int records;
+    private long baseSequence;
+    private long sequence;
+    private boolean dirty;
+
+    private EventJournal(String event, Path path) {
+        this.event = event;
+        this.path = path;
+    }
+
+    /**
+     * Get the journal of the event, opening and replaying it the first time
+     *
+     * @param event the event of the journal
+     * @param path  the path of the journal file
+     * @return the journal of the event
+     */
+    public static EventJournal get(String event, Path path) {
+        synchronized (journals) {
+            return journals.computeIfAbsent(event, key -> {
+                EventJournal journal = new EventJournal(key, path);
+                journal.open();
+                return journal;
+            });
+        }
+    }
+
+    /**
+     * Compact and close every opened journal, called when the server stops
+     */
+    public static void closeAll() {
+        synchronized (journals) {
+            for (EventJournal journal : journals.values()) {
+                journal.close();
+            }
+
+            journals.clear();
+        }
+    }
+
+    /**
+     * Sync every opened journal
+     */
+    public static void syncAll() {
+        List<EventJournal> opened;
+        synchronized (journals) {
+            opened = new ArrayList<>(journals.values());
+        }
+
+        for (EventJournal journal : opened) {
+            journal.sync();
+        }
+    }
+
+    /**
+     * Compact every opened journal grown past the threshold, called by the background writer
+     */
+    public static void compactAll() {
+        List<EventJournal> opened;
+        synchronized (journals) {
+            opened = new ArrayList<>(journals.values());
+        }
+
+        for (EventJournal journal : opened) {
+            journal.compactIfFull();
+        }
+    }
+
+    /**
+     * Append the new state of the player
+     *
+     * @param playerUuid UUID of the player
+     * @param data       the full player data for the event
+     */
+    public synchronized void put(UUID playerUuid, JsonArray data) {
+        if (channel == null) {
+            EventData.savePlayerEventData(playerUuid, event, data);
+            return;
+        }
+
+        write(OP_PUT, playerUuid, EventData.encode(event, data));
+        changes.put(playerUuid, new Change(data));
+    }
+
+    /**
+     * Append entries to the state of the player, only the new entries are written and kept,
+     * the stored state is not read until the journal is compacted
+     *
+     * @param playerUuid UUID of the player
+     * @param entries    the entries to add to the player data for the event
+     */
+    public synchronized void append(UUID playerUuid, JsonArray entries) {
+        if (channel == null) {
+            EventData.savePlayerEventData(playerUuid, event, merge(EventData.loadStoredPlayerEventData(playerUuid, event), entries));
+            return;
+        }
+
+        write(OP_APPEND, playerUuid, EventData.encode(event, entries));
+        changes.computeIfAbsent(playerUuid, key -> new Change(null)).appended.addAll(entries);
+    }
+
+    /**
+     * Get the journaled state of the player, merged with the stored one when only entries were appended
+     *
+     * @return a copy of the state, or null if the player has no change since the last compaction
+     */
+    public synchronized JsonArray get(UUID playerUuid) {
+        Change change = changes.get(playerUuid);
+        return change != null ? change.merge(playerUuid).deepCopy() : null;
+    }
+
+    /**
+     * Get every player with a change since the last compaction
+     */
+    public synchronized Set<UUID> getPlayers() {
+        return new HashSet<>(changes.keySet());
+    }
+
+    /**
+     * Get the sequence of the last put or append, it keeps growing across compactions and restarts
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Get the sequence reached when the journal was last compacted, the changes up to it are only in the store
+     */
+    public synchronized long getBaseSequence() {
+        return baseSequence;
+    }
+
+    /**
+     * Add the entries missing from the state, appended entries are a set so an entry written twice is kept once
+     *
+     * @return the merged state, the given arrays are left unchanged
+     */
+    static JsonArray merge(JsonArray state, JsonArray appended) {
+        if (appended.isEmpty()) {
+            return state;
+        }
+
+        Set<JsonElement> seen = new HashSet<>(state.size() + appended.size());
+        JsonArray merged = new JsonArray(state.size() + appended.size());
+        for (JsonElement entry : state) {
+            seen.add(entry);
+            merged.add(entry);
+        }
+
+        for (JsonElement entry : appended) {
+            if (seen.add(entry)) {
+                merged.add(entry);
+            }
+        }
+
+        return merged;
+    }
+
+    /**
+     * Force the appended records to the disk
+     */
+    public synchronized void sync() {
+        try {
+            if (channel != null && dirty) {
+                channel.force(false);
+                dirty = false;
+            }
+        } catch (IOException e) {
+            LOGGER.error("Failed to sync journal: {}", path, e);
+        }
+    }
+
+    private synchronized void compactIfFull() {
+        if (records >= COMPACT_RECORDS) {
+            compact();
+        }
+    }
+
+    /**
+     * Write the journaled states into the player store and truncate the journal
+     */
+    public synchronized void compact() {
+        if (channel == null || changes.isEmpty()) {
+            return;
+        }
+
+        sync();
+        for (Map.Entry<UUID, Change> entry : changes.entrySet()) {
+            EventData.savePlayerEventData(entry.getKey(), event, entry.getValue().merge(entry.getKey()));
+        }
+
+        // The store must be durable before the records proving its content are dropped
+        EventData.syncPlayerEventData(event);
+
+        try {
+            channel.truncate(0);
+            baseSequence = sequence;
+            write(OP_SEQUENCE, NO_PLAYER, ByteBuffer.allocate(Long.BYTES).putLong(baseSequence).array());
+            channel.force(true);
+            changes.clear();
+            records = 0;
+            dirty = false;
+        } catch (IOException e) {
+            LOGGER.error("Failed to truncate journal: {}", path, e);
+        }
+    }
+
+    private void open() {
+        try {
+            Files.createDirectories(path.getParent());
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            replay();
+            compact();
+        } catch (IOException e) {
+            LOGGER.error("Failed to open journal: {}", path, e);
+        }
+    }
+
+    private void close() {
+        compact();
+        if (channel == null) {
+            return;
+        }
+
+        try {
+            channel.close();
+        } catch (IOException e) {
+            LOGGER.error("Failed to close journal: {}", path, e);
+        }
+    }
+
+    private void replay() throws IOException {
+        long size = channel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+
+        while (position + HEADER_SIZE <= size) {
+            header.clear();
+            channel.read(header, position);
+            header.flip();
+
+            int length = header.getInt();
+            int checksum = header.getInt();
+            byte op = header.get();
+            UUID playerUuid = new UUID(header.getLong(), header.getLong());
+            if (length < 0 || position + HEADER_SIZE + length > size) {
+                break;
+            }
+
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            channel.read(payload, position + HEADER_SIZE);
+            if (checksum(op, playerUuid, payload.array()) != checksum) {
+                break;
+            }
+
+            if (op == OP_SEQUENCE) {
+                baseSequence = sequence = payload.getLong(0);
+            } else {
+                if (op == OP_PUT) {
+                    changes.put(playerUuid, new Change(EventData.decode(payload.array())));
+                } else if (op == OP_APPEND) {
+                    changes.computeIfAbsent(playerUuid, key -> new Change(null)).appended.addAll(EventData.decode(payload.array()));
+                }
+
+                records++;
+                sequence++;
+            }
+
+            position += HEADER_SIZE + length;
+        }
+
+        if (position < size) {
+            // Torn or corrupted tail from a crash in the middle of an append, everything before it is valid
+            LOGGER.warn("Discarding {} trailing bytes of journal: {}", size - position, path);
+            channel.truncate(position);
+        }
+
+        channel.position(position);
+        if (records > 0) {
+            LOGGER.info("Recovered {} journal records for event {}", records, event);
+        }
+    }
+
+    private void write(byte op, UUID playerUuid, byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        buffer.putInt(payload.length);
+        buffer.putInt(checksum(op, playerUuid, payload));
+        buffer.put(op);
+        buffer.putLong(playerUuid.getMostSignificantBits());
+        buffer.putLong(playerUuid.getLeastSignificantBits());
+        buffer.put(payload);
+        buffer.flip();
+
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+
+            if (op != OP_SEQUENCE) {
+                records++;
+                sequence++;
+            }
+
+            dirty = true;
+            EventStats.DATA_WRITE.addBytes(HEADER_SIZE + payload.length);
+        } catch (IOException e) {
+            LOGGER.error("Failed to append to journal: {}", path, e);
+        }
+    }
+
+    /**
+     * Journaled change of one player, the last full state written if any, then the entries appended after it
+     */
+    private final class Change {
+        private final JsonArray state;
+        private final JsonArray appended = new JsonArray();
+
+        private Change(JsonArray state) {
+            this.state = state;
+        }
+
+        private JsonArray merge(UUID playerUuid) {
+            return EventJournal.merge(state != null ? state : EventData.loadStoredPlayerEventData(playerUuid, event), appended);
+        }
+    }
+
+    private static int checksum(byte op, UUID playerUuid, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(op);
+        ByteBuffer uuid = ByteBuffer.allocate(Long.BYTES * 2);
+        uuid.putLong(playerUuid.getMostSignificantBits()).putLong(playerUuid.getLeastSignificantBits());
+        crc.update(uuid.array());
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
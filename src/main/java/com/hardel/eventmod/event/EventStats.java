@@ -0,0 +1,99 @@
+package com.hardel.eventmod.event;
+
+import com.hardel.eventmod.utils.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timing of each subsystem of the mod, shown by {@code /event stats}.
+ * Every section records its call durations in a histogram along with byte and cache counters,
+ * all of them accumulated since the window was last reset.
+ */
+public enum EventStats {
+    PARKOUR_TICK("parkour tick"),
+    FINDER_USE("finder use"),
+    CONFIG_LOAD("config load"),
+    DATA_READ("data read"),
+    DATA_WRITE("data write");
+
+    private static volatile long windowStart = System.nanoTime();
+    private final String displayName;
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    EventStats(String displayName) {
+        this.displayName = displayName;
+    }
+
+    /**
+     * Record a call of the section
+     *
+     * @param startNanos the {@link System#nanoTime()} taken when the call started
+     */
+    public void record(long startNanos) {
+        long duration = System.nanoTime() - startNanos;
+        latencies.record(duration);
+        totalNanos.add(duration);
+    }
+
+    public void addBytes(long count) {
+        bytes.add(count);
+    }
+
+    public void hit() {
+        hits.increment();
+    }
+
+    public void miss() {
+        misses.increment();
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public LatencyHistogram.Snapshot getLatencies() {
+        return latencies.snapshot();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * Get how long the current window has been running
+     */
+    public static long getWindowNanos() {
+        return System.nanoTime() - windowStart;
+    }
+
+    /**
+     * Clear every section and start a new window
+     */
+    public static void resetAll() {
+        for (EventStats section : values()) {
+            section.latencies.reset();
+            section.totalNanos.reset();
+            section.bytes.reset();
+            section.hits.reset();
+            section.misses.reset();
+        }
+
+        windowStart = System.nanoTime();
+    }
+}
@@ -0,0 +1,28 @@
+package com.hardel.eventmod.event;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Compact JSON codec, the default for events without a binary codec and the one used for debugging.
+ */
+public class JsonPlayerDataCodec implements PlayerDataCodec {
+    public static final byte ID = 0;
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public byte[] encode(JsonArray data) {
+        return data.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public JsonArray decode(byte[] payload) {
+        return JsonParser.parseString(new String(payload, StandardCharsets.UTF_8)).getAsJsonArray();
+    }
+}
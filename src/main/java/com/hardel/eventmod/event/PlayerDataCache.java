@@ -0,0 +1,153 @@
+package com.hardel.eventmod.event;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of the player data of an event, only accessed from the server thread.
+ * Online players are pinned and never evicted, offline players are kept in least recently used order
+ * and evicted once there are more than {@code eventmod.player_cache_size} of them.
+ * Player data is handed to the writer on every change, so an evicted entry never holds unsaved state.
+ * Joining players are preloaded on a virtual thread, so the server thread never waits on their first read.
+ */
+public class PlayerDataCache<V> {
+    private static final Logger LOGGER = LogManager.getLogger(PlayerDataCache.class);
+    private static final int MAX_SIZE = Integer.getInteger("eventmod.player_cache_size", 1024);
+    private static final ExecutorService LOADER = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<UUID, V> pinned = new HashMap<>();
+    private final LinkedHashMap<UUID, V> unpinned = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<UUID> pinnedPlayers = new HashSet<>();
+    // Token of the pending preload of each player, a preload only publishes if its token is still there
+    private final Map<UUID, Object> loading = new HashMap<>();
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Get the cached data of the player
+     *
+     * @return the data, or null on a miss
+     */
+    public V get(UUID playerUuid) {
+        V value = pinned.get(playerUuid);
+        if (value == null) {
+            value = unpinned.get(playerUuid);
+        }
+
+        if (value != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+
+        return value;
+    }
+
+    /**
+     * Get the cached data of the player without counting a hit or a miss
+     */
+    public V peek(UUID playerUuid) {
+        V value = pinned.get(playerUuid);
+        return value != null ? value : unpinned.get(playerUuid);
+    }
+
+    public void put(UUID playerUuid, V value) {
+        loading.remove(playerUuid);
+        if (pinnedPlayers.contains(playerUuid)) {
+            pinned.put(playerUuid, value);
+            return;
+        }
+
+        unpinned.put(playerUuid, value);
+        Iterator<V> iterator = unpinned.values().iterator();
+        while (unpinned.size() > MAX_SIZE && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Pin the player so its data is never evicted, called when the player joins
+     */
+    public void pin(UUID playerUuid) {
+        pinnedPlayers.add(playerUuid);
+        V value = unpinned.remove(playerUuid);
+        if (value != null) {
+            pinned.put(playerUuid, value);
+        }
+    }
+
+    /**
+     * Unpin the player and unload its data, called when the player leaves
+     */
+    public void unload(UUID playerUuid) {
+        pinnedPlayers.remove(playerUuid);
+        loading.remove(playerUuid);
+        pinned.remove(playerUuid);
+        unpinned.remove(playerUuid);
+    }
+
+    /**
+     * Read the data of a pinned player on a virtual thread, then publish it through the server executor.
+     * The result is dropped if the player left, or if its data was loaded synchronously in the meantime.
+     *
+     * @param playerUuid     UUID of the player
+     * @param loader         reads the data of the player, must be safe to call off the server thread
+     * @param serverExecutor runs the publication on the server thread
+     */
+    public void preload(UUID playerUuid, Function<UUID, V> loader, Executor serverExecutor) {
+        if (peek(playerUuid) != null || loading.containsKey(playerUuid)) {
+            return;
+        }
+
+        Object token = new Object();
+        loading.put(playerUuid, token);
+        LOADER.execute(() -> {
+            V value = null;
+            try {
+                value = loader.apply(playerUuid);
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to preload player data: {}", playerUuid, e);
+            }
+
+            V loaded = value;
+            serverExecutor.execute(() -> {
+                if (!loading.remove(playerUuid, token) || loaded == null || !pinnedPlayers.contains(playerUuid)) {
+                    return;
+                }
+
+                put(playerUuid, loaded);
+            });
+        });
+    }
+
+    /**
+     * Check if the data of the player is still being preloaded
+     */
+    public boolean isLoading(UUID playerUuid) {
+        return loading.containsKey(playerUuid);
+    }
+
+    public int size() {
+        return pinned.size() + unpinned.size();
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public long getEvictions() {
+        return evictions;
+    }
+}
@@ -0,0 +1,15 @@
+package com.hardel.eventmod.event;
+
+import com.google.gson.JsonArray;
+
+/**
+ * Encode the data of a player for an event to the bytes written in the player store and journal.
+ * The id is written next to every record, so records written with another codec stay readable.
+ */
+public interface PlayerDataCodec {
+    byte id();
+
+    byte[] encode(JsonArray data);
+
+    JsonArray decode(byte[] payload);
+}
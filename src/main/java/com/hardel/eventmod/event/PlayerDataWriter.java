@@ -0,0 +1,290 @@
+package com.hardel.eventmod.event;
+
+import com.google.gson.JsonArray;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Write-behind layer for the player data files.
+ * Players are marked dirty with a snapshot of their data or with the entries added to it, repeated updates of the same
+ * player are coalesced and a background thread journals them every {@code eventmod.flush_interval} milliseconds,
+ * then compacts the full journals. When the queue is full the caller writes the update itself,
+ * so the memory used by pending writes stays bounded.
+ */
+public class PlayerDataWriter {
+    private static final Logger LOGGER = LogManager.getLogger(PlayerDataWriter.class);
+    private static final long FLUSH_INTERVAL = Long.getLong("eventmod.flush_interval", 5000L);
+    private static final int QUEUE_CAPACITY = Integer.getInteger("eventmod.flush_queue_capacity", 4096);
+
+    private static final Map<Key, PendingWrite> pending = new ConcurrentHashMap<>();
+    private static final Map<IndexKey, Supplier<JsonArray>> pendingIndexes = new ConcurrentHashMap<>();
+    private static final BlockingQueue<Key> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private static final Object writeLock = new Object();
+    private static final Object wakeup = new Object();
+    private static volatile Thread thread;
+    // Guarded by wakeup, so a stop requested right before the writer waits is never missed
+    private static boolean stopRequested;
+
+    /**
+     * Start the background writer, called when the server starts
+     */
+    public static synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+
+        synchronized (wakeup) {
+            stopRequested = false;
+        }
+
+        thread = new Thread(PlayerDataWriter::run, "EventMod Player Data Writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop the background writer and synchronously flush everything still pending, called when the server stops
+     */
+    public static synchronized void stop() {
+        Thread current = thread;
+        thread = null;
+
+        if (current != null) {
+            synchronized (wakeup) {
+                stopRequested = true;
+                wakeup.notifyAll();
+            }
+
+            try {
+                current.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        flushAll();
+    }
+
+    /**
+     * Mark the player as dirty for the event, the snapshot must not be modified afterward
+     *
+     * @param playerUuid UUID of the player
+     * @param event      the event the data belongs to
+     * @param data       the snapshot of the player data to write
+     */
+    public static void mark(UUID playerUuid, String event, JsonArray data) {
+        Key key = new Key(event, playerUuid);
+        // The snapshot is the full state, it replaces the entries appended before it
+        boolean queued = pending.put(key, new PendingWrite(data, new JsonArray())) != null;
+        enqueue(key, queued);
+    }
+
+    /**
+     * Mark entries added to the player data for the event, coalesced with the pending write of the player if any
+     *
+     * @param playerUuid UUID of the player
+     * @param event      the event the data belongs to
+     * @param entries    the entries to add, must not be modified afterward
+     */
+    public static void markAppend(UUID playerUuid, String event, JsonArray entries) {
+        Key key = new Key(event, playerUuid);
+        boolean[] queued = new boolean[1];
+        pending.compute(key, (k, write) -> {
+            queued[0] = write != null;
+            // Always a new write, so the writer only drops the one it has journaled
+            JsonArray appended = new JsonArray();
+            if (write != null) {
+                appended.addAll(write.appended());
+            }
+
+            appended.addAll(entries);
+            return new PendingWrite(write != null ? write.snapshot() : null, appended);
+        });
+        enqueue(key, queued[0]);
+    }
+
+    private static void enqueue(Key key, boolean queued) {
+        if (thread == null) {
+            flush(key);
+        } else if (!queued && !queue.offer(key)) {
+            // The writer is late, apply backpressure by writing on the caller thread
+            flush(key);
+        }
+    }
+
+    /**
+     * Mark an index file of the event as dirty, the snapshot is built by the writer when it flushes
+     *
+     * @param event    the event the index belongs to
+     * @param name     the name of the index
+     * @param snapshot build the content of the index, must be safe to call from the writer thread
+     */
+    public static void markIndex(String event, String name, Supplier<JsonArray> snapshot) {
+        IndexKey key = new IndexKey(event, name);
+        pendingIndexes.put(key, snapshot);
+        if (thread == null) {
+            flush(key);
+        }
+    }
+
+    /**
+     * Drop the pending write of an index file
+     */
+    public static void discardIndex(String event, String name) {
+        synchronized (writeLock) {
+            pendingIndexes.remove(new IndexKey(event, name));
+        }
+    }
+
+    /**
+     * Get the pending write of the player, so reads always see the latest marked data
+     *
+     * @return a copy of the pending write, or null if nothing is waiting to be written
+     */
+    static PendingWrite peek(UUID playerUuid, String event) {
+        PendingWrite write = pending.get(new Key(event, playerUuid));
+        return write != null ? new PendingWrite(write.snapshot() != null ? write.snapshot().deepCopy() : null, write.appended().deepCopy()) : null;
+    }
+
+    /**
+     * Get every player with a pending write for the event
+     */
+    public static List<UUID> getPendingPlayers(String event) {
+        List<UUID> players = new ArrayList<>();
+        for (Key key : pending.keySet()) {
+            if (key.event().equals(event)) {
+                players.add(key.playerUuid());
+            }
+        }
+
+        return players;
+    }
+
+    /**
+     * Write every pending snapshot on the caller thread
+     */
+    public static void flushAll() {
+        List<Key> keys = new ArrayList<>();
+        queue.drainTo(keys);
+        keys.addAll(pending.keySet());
+
+        for (Key key : keys) {
+            flush(key);
+        }
+
+        EventJournal.syncAll();
+        flushIndexes();
+    }
+
+    private static void flush(Key key) {
+        synchronized (writeLock) {
+            // Journal before dropping the write, so a concurrent read always finds the data in one of them.
+            // A write marked meanwhile replaces this one and is journaled right after it, appending
+            // the same entries twice is harmless since the journal keeps them as a set.
+            PendingWrite write;
+            while ((write = pending.get(key)) != null) {
+                EventData.journalPlayerEventData(key.playerUuid(), key.event(), write.snapshot(), write.appended());
+                if (pending.remove(key, write)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static void flush(IndexKey key) {
+        synchronized (writeLock) {
+            Supplier<JsonArray> snapshot = pendingIndexes.remove(key);
+            if (snapshot != null) {
+                // Read before the snapshot is built, the index then covers at least every record up to this one
+                long sequence = EventData.getJournalSequence(key.event());
+                EventData.saveIndexEventData(key.event(), key.name(), sequence, snapshot.get());
+            }
+        }
+    }
+
+    private static void flushIndexes() {
+        for (IndexKey key : new ArrayList<>(pendingIndexes.keySet())) {
+            try {
+                flush(key);
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to flush index {} for event {}", key.name(), key.event(), e);
+            }
+        }
+    }
+
+    private static void run() {
+        List<Key> keys = new ArrayList<>();
+        while (true) {
+            // Not interrupted on stop, an interrupt would close the file channel in the middle of a write
+            synchronized (wakeup) {
+                try {
+                    if (!stopRequested) {
+                        wakeup.wait(FLUSH_INTERVAL);
+                    }
+                } catch (InterruptedException e) {
+                    break;
+                }
+
+                if (stopRequested) {
+                    break;
+                }
+            }
+
+            queue.drainTo(keys);
+            for (Key key : keys) {
+                try {
+                    flush(key);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Failed to flush player data of {} for event {}", key.playerUuid(), key.event(), e);
+                }
+            }
+
+            // Clean journals are skipped, compaction reads and writes the store here instead of on the server thread
+            EventJournal.syncAll();
+            EventJournal.compactAll();
+
+            flushIndexes();
+            keys.clear();
+        }
+    }
+
+    private record Key(String event, UUID playerUuid) {
+    }
+
+    private record IndexKey(String event, String name) {
+    }
+
+    /**
+     * Pending update of a player, the last snapshot marked if any, then the entries appended after it.
+     * Compared by identity, so a write replaced while it is journaled is never dropped.
+     */
+    static final class PendingWrite {
+        private final JsonArray snapshot;
+        private final JsonArray appended;
+
+        private PendingWrite(JsonArray snapshot, JsonArray appended) {
+            this.snapshot = snapshot;
+            this.appended = appended;
+        }
+
+        /**
+         * @return the full state of the player, or null if only entries were appended
+         */
+        JsonArray snapshot() {
+            return snapshot;
+        }
+
+        JsonArray appended() {
+            return appended;
+        }
+    }
+}
@@ -0,0 +1,331 @@
+package com.hardel.eventmod.event;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * Single file storage of every player of an event.
+ * Records are looked up through an in-memory UUID to offset index and read through a memory mapping of the file.
+ * The mapping is only redone once the file has doubled, at most up to the first 2 GiB, the records past it are read
+ * from the channel instead.
+ * A record is rewritten in place while the new payload fits its capacity, otherwise it is appended and the old one
+ * is marked dead. Dead space is reclaimed by rewriting the live records once it outweighs them.
+ * Every record carries a checksum of its content, a record torn by a crash is dropped when the store is opened and
+ * restored by the journal replay, as the journal is only truncated once the store is synced.
+ */
+public class SegmentStore {
+    private static final Logger LOGGER = LogManager.getLogger(SegmentStore.class);
+    private static final int MAGIC = 0x45565347;
+    private static final int VERSION = 2;
+    private static final int FILE_HEADER_SIZE = Integer.BYTES + Integer.BYTES;
+    private static final int RECORD_HEADER_SIZE = Byte.BYTES + Byte.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final long COMPACT_MIN_DEAD_BYTES = 1 << 20;
+    private static final long MAX_MAPPED_SIZE = Integer.MAX_VALUE;
+    private static final byte DEAD = 0;
+    private static final byte LIVE = 1;
+
+    private final Path path;
+    private final Map<UUID, Slot> index = new HashMap<>();
+    private FileChannel channel;
+    private MappedByteBuffer mapped;
+    private long size;
+    private long deadBytes;
+    private long liveBytes;
+
+    private SegmentStore(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Open the store, creating the file if needed
+     *
+     * @param path the path of the segment file
+     * @return the opened store
+     */
+    public static SegmentStore open(Path path) throws IOException {
+        SegmentStore store = new SegmentStore(path);
+        store.openChannel();
+        return store;
+    }
+
+    /**
+     * Read the payload of the player
+     *
+     * @return the payload, or null if the player has no record
+     */
+    public synchronized Record read(UUID playerUuid) throws IOException {
+        Slot slot = index.get(playerUuid);
+        if (slot == null) {
+            return null;
+        }
+
+        byte[] payload = new byte[slot.length];
+        long position = slot.offset + RECORD_HEADER_SIZE;
+        if (position + slot.length > mappedSize() && shouldRemap()) {
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(size, MAX_MAPPED_SIZE));
+        }
+
+        if (position + slot.length <= mappedSize()) {
+            mapped.get((int) position, payload);
+        } else {
+            readFully(ByteBuffer.wrap(payload), position);
+        }
+
+        if (checksum(slot.encoding, playerUuid, payload) != slot.checksum) {
+            throw new IOException("Corrupted record of " + playerUuid + " in segment " + path);
+        }
+
+        return new Record(slot.encoding, payload);
+    }
+
+    /**
+     * Write the payload of the player, in place if it fits the current record
+     */
+    public synchronized void write(UUID playerUuid, byte encoding, byte[] payload) throws IOException {
+        Slot slot = index.get(playerUuid);
+        if (slot != null && payload.length <= slot.capacity) {
+            // The payload goes first, a crash before the header is rewritten leaves a checksum mismatch rather than a stale length
+            int checksum = checksum(encoding, playerUuid, payload);
+            writeFully(ByteBuffer.wrap(payload), slot.offset + RECORD_HEADER_SIZE);
+            ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE - Byte.BYTES);
+            header.put(encoding).putLong(playerUuid.getMostSignificantBits()).putLong(playerUuid.getLeastSignificantBits()).putInt(slot.capacity).putInt(payload.length).putInt(checksum).flip();
+            writeFully(header, slot.offset + Byte.BYTES);
+
+            liveBytes += payload.length - slot.length;
+            index.put(playerUuid, new Slot(slot.offset, slot.capacity, payload.length, encoding, checksum));
+            return;
+        }
+
+        // Leave room to grow, so small updates keep landing in place
+        int capacity = payload.length + Math.max(32, payload.length / 2);
+        int checksum = checksum(encoding, playerUuid, payload);
+        long offset = size;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + capacity);
+        record.put(LIVE).put(encoding).putLong(playerUuid.getMostSignificantBits()).putLong(playerUuid.getLeastSignificantBits()).putInt(capacity).putInt(payload.length).putInt(checksum).put(payload);
+        record.position(0);
+        writeFully(record, offset);
+        size += record.capacity();
+
+        if (slot != null) {
+            writeFully(ByteBuffer.wrap(new byte[]{DEAD}), slot.offset);
+            deadBytes += RECORD_HEADER_SIZE + slot.capacity;
+            liveBytes -= slot.length;
+        }
+
+        liveBytes += payload.length;
+        index.put(playerUuid, new Slot(offset, capacity, payload.length, encoding, checksum));
+
+        if (deadBytes > COMPACT_MIN_DEAD_BYTES && deadBytes > liveBytes) {
+            compact();
+        }
+    }
+
+    /**
+     * Get every player stored
+     */
+    public synchronized Set<UUID> getPlayers() {
+        return new HashSet<>(index.keySet());
+    }
+
+    /**
+     * Force the written records to the disk
+     */
+    public synchronized void sync() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Rewrite the live records into a new file to reclaim the space of the dead ones
+     */
+    public synchronized void compact() throws IOException {
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        Map<UUID, Slot> compacted = new HashMap<>();
+
+        try (FileChannel target = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+            target.write(fileHeader, 0);
+            long offset = FILE_HEADER_SIZE;
+
+            for (Map.Entry<UUID, Slot> entry : index.entrySet()) {
+                Slot slot = entry.getValue();
+                ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + slot.capacity);
+                readFully(record, slot.offset);
+                record.flip();
+                while (record.hasRemaining()) {
+                    target.write(record, offset + record.position());
+                }
+
+                compacted.put(entry.getKey(), new Slot(offset, slot.capacity, slot.length, slot.encoding, slot.checksum));
+                offset += RECORD_HEADER_SIZE + slot.capacity;
+            }
+
+            target.force(true);
+        }
+
+        channel.close();
+        mapped = null;
+        try {
+            Files.move(tempPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        LOGGER.info("Compacted segment {}, reclaimed {} bytes", path, deadBytes);
+        index.clear();
+        index.putAll(compacted);
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        size = channel.size();
+        deadBytes = 0;
+    }
+
+    /**
+     * Compact then close the store
+     */
+    public synchronized void close() throws IOException {
+        if (deadBytes > 0) {
+            compact();
+        }
+
+        channel.force(true);
+        channel.close();
+        mapped = null;
+    }
+
+    private void openChannel() throws IOException {
+        Files.createDirectories(path.getParent());
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        size = channel.size();
+
+        if (size < FILE_HEADER_SIZE) {
+            ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_SIZE).putInt(MAGIC).putInt(VERSION).flip();
+            channel.truncate(0);
+            writeFully(fileHeader, 0);
+            size = FILE_HEADER_SIZE;
+            return;
+        }
+
+        ByteBuffer fileHeader = ByteBuffer.allocate(FILE_HEADER_SIZE);
+        channel.read(fileHeader, 0);
+        fileHeader.flip();
+        if (fileHeader.getInt() != MAGIC) {
+            throw new IOException("Not a segment file: " + path);
+        }
+
+        int version = fileHeader.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported segment version " + version + ": " + path);
+        }
+
+        scan();
+    }
+
+    private void scan() throws IOException {
+        long offset = FILE_HEADER_SIZE;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_SIZE);
+
+        while (offset + RECORD_HEADER_SIZE <= size) {
+            header.clear();
+            readFully(header, offset);
+            header.flip();
+
+            byte status = header.get();
+            byte encoding = header.get();
+            UUID playerUuid = new UUID(header.getLong(), header.getLong());
+            int capacity = header.getInt();
+            int length = header.getInt();
+            int checksum = header.getInt();
+            if (capacity < 0 || length < 0 || length > capacity || offset + RECORD_HEADER_SIZE + capacity > size) {
+                break;
+            }
+
+            if (status == LIVE && !isIntact(offset, encoding, playerUuid, length, checksum)) {
+                LOGGER.warn("Dropping corrupted record of {} in segment: {}", playerUuid, path);
+                writeFully(ByteBuffer.wrap(new byte[]{DEAD}), offset);
+                status = DEAD;
+            }
+
+            if (status == LIVE) {
+                // A crash between appending a relocated record and killing the old one leaves both alive, the last wins
+                Slot previous = index.put(playerUuid, new Slot(offset, capacity, length, encoding, checksum));
+                if (previous != null) {
+                    writeFully(ByteBuffer.wrap(new byte[]{DEAD}), previous.offset);
+                    deadBytes += RECORD_HEADER_SIZE + previous.capacity;
+                    liveBytes -= previous.length;
+                }
+
+                liveBytes += length;
+            } else {
+                deadBytes += RECORD_HEADER_SIZE + capacity;
+            }
+
+            offset += RECORD_HEADER_SIZE + capacity;
+        }
+
+        if (offset < size) {
+            LOGGER.warn("Discarding {} trailing bytes of segment: {}", size - offset, path);
+            channel.truncate(offset);
+            size = offset;
+        }
+    }
+
+    private boolean isIntact(long offset, byte encoding, UUID playerUuid, int length, int checksum) throws IOException {
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(payload, offset + RECORD_HEADER_SIZE);
+        return checksum(encoding, playerUuid, payload.array()) == checksum;
+    }
+
+    private static int checksum(byte encoding, UUID playerUuid, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(encoding);
+        ByteBuffer uuid = ByteBuffer.allocate(Long.BYTES * 2);
+        uuid.putLong(playerUuid.getMostSignificantBits()).putLong(playerUuid.getLeastSignificantBits());
+        crc.update(uuid.array());
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private long mappedSize() {
+        return mapped != null ? mapped.capacity() : 0;
+    }
+
+    // Growing the mapping geometrically keeps the number of remaps, and of stale mappings awaiting the GC, logarithmic
+    private boolean shouldRemap() {
+        long mappedSize = mappedSize();
+        return mappedSize < MAX_MAPPED_SIZE && (mapped == null || size >= Math.min(mappedSize * 2, MAX_MAPPED_SIZE));
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of segment " + path + " at " + position);
+            }
+
+            position += read;
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    public record Record(byte encoding, byte[] payload) {
+    }
+
+    private record Slot(long offset, int capacity, int length, byte encoding, int checksum) {
+    }
+}
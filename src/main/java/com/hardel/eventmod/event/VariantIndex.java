@@ -0,0 +1,63 @@
+package com.hardel.eventmod.event;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Immutable sorted index of the variant names of an event, searched by case-insensitive prefix.
+ * Built with each config snapshot, so command suggestions never read the config files.
+ */
+public final class VariantIndex {
+    public static final VariantIndex EMPTY = new VariantIndex(new String[0], new String[0]);
+    private final String[] keys;
+    private final String[] names;
+
+    private VariantIndex(String[] keys, String[] names) {
+        this.keys = keys;
+        this.names = names;
+    }
+
+    public static VariantIndex build(Collection<String> variants) {
+        List<String> sorted = new ArrayList<>(variants);
+        sorted.sort(Comparator.comparing((String variant) -> variant.toLowerCase(Locale.ROOT)).thenComparing(Comparator.naturalOrder()));
+
+        String[] keys = new String[sorted.size()];
+        String[] names = sorted.toArray(new String[0]);
+        for (int i = 0; i < names.length; i++) {
+            keys[i] = names[i].toLowerCase(Locale.ROOT);
+        }
+
+        return new VariantIndex(keys, names);
+    }
+
+    /**
+     * Visit every variant starting with the prefix, in order
+     *
+     * @param prefix the prefix, compared ignoring case
+     * @param action called with each matching variant name
+     */
+    public void forEachWithPrefix(String prefix, Consumer<String> action) {
+        String key = prefix.toLowerCase(Locale.ROOT);
+        for (int i = lowerBound(key); i < keys.length && keys[i].startsWith(key); i++) {
+            action.accept(names[i]);
+        }
+    }
+
+    /**
+     * Find the first key not less than the given one, several variants can share the same key when they only differ by case
+     */
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle].compareTo(key) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+
+        return low;
+    }
+}
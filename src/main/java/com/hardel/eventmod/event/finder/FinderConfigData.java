@@ -5,16 +5,17 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.hardel.eventmod.EventMod;
 import com.hardel.eventmod.event.EventData;
+import com.hardel.eventmod.event.VariantIndex;
+import com.hardel.eventmod.utils.EffectPreset;
+import com.hardel.eventmod.utils.LootTableUtils;
 import net.minecraft.particle.ParticleTypes;
 import net.minecraft.particle.SimpleParticleType;
 import net.minecraft.registry.DynamicRegistryManager;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.text.Text;
 import net.minecraft.util.Identifier;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
+import java.util.*;
 
 public record FinderConfigData(
         UUID uuid,
@@ -25,21 +26,114 @@ public record FinderConfigData(
         Identifier sound,
         SimpleParticleType particle
 ) {
-    private static final List<FinderConfigData> instances = new ArrayList<>();
+    private static volatile Snapshot snapshot;
 
     public static Builder builder() {
         return new Builder();
     }
 
+    /**
+     * Get every config, as an immutable snapshot that is safe to read from any thread
+     */
     public static List<FinderConfigData> getInstance() {
-        if (instances.isEmpty()) {
-            loadConfigData();
+        return getSnapshot().configs();
+    }
+
+    /**
+     * Get the config of the variant
+     *
+     * @return the config, or null if the variant does not exist
+     */
+    public static FinderConfigData getByVariant(String variant) {
+        return getSnapshot().byVariant().get(variant);
+    }
+
+    /**
+     * Get the prefix-searchable index of the variant names
+     */
+    public static VariantIndex getVariantIndex() {
+        return getSnapshot().variants();
+    }
+
+    /**
+     * Get the compiled feedback of a new find of the variant
+     *
+     * @return the preset, or null if the variant does not exist
+     */
+    public static EffectPreset getFoundEffects(String variant) {
+        return getSnapshot().foundEffects().get(variant);
+    }
+
+    /**
+     * Resolve the reward of every variant, so a missing loot table is reported once the datapacks are loaded
+     * rather than on the first find
+     */
+    public static void validateRewards(MinecraftServer server) {
+        for (FinderConfigData config : getSnapshot().byVariant().values()) {
+            LootTableUtils.getLootTable(server, config.reward());
         }
+    }
 
-        return instances;
+    /**
+     * Get the config of the head owner
+     *
+     * @return the first config with this head, or null if the head belongs to no config
+     */
+    public static FinderConfigData getByHeadUuid(UUID uuid) {
+        return getSnapshot().byHead().get(uuid);
     }
 
-    private static void loadConfigData() {
+    /**
+     * Check if the configs were loaded at least once, they may still be empty
+     */
+    public static boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    /**
+     * Read the config file again and publish its content, called by the config lifecycle
+     *
+     * @return true if a new snapshot was published, false if the file holds the configs already published
+     */
+    public static synchronized boolean reload() {
+        try {
+            return loadConfigData();
+        } catch (RuntimeException e) {
+            if (snapshot == null) {
+                // Still mark the configs as loaded, so a broken file is not read again on every access
+                publish(List.of());
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Get the current snapshot, loading it on the caller thread if the background load has not run yet
+     */
+    private static Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (FinderConfigData.class) {
+                if (snapshot == null) {
+                    reload();
+                }
+
+                current = snapshot;
+            }
+        }
+
+        return current;
+    }
+
+    /**
+     * Publish a new snapshot with its indexes, readers holding the previous one keep a consistent view
+     */
+    private static void publish(List<FinderConfigData> configs) {
+        snapshot = Snapshot.of(configs, snapshot);
+    }
+
+    private static boolean loadConfigData() {
         JsonArray loadedConfigs = EventData.loadConfigEventData(EventMod.finderKey);
         List<FinderConfigData> configs = new ArrayList<>();
 
@@ -63,13 +157,27 @@ public record FinderConfigData(
             );
         }
 
-        instances.clear();
-        instances.addAll(configs);
+        Snapshot previous = snapshot;
+        if (previous != null) {
+            // Keep the instances of the unchanged variants, so only the edited ones get a new effect preset
+            configs.replaceAll(config -> config.equals(previous.byVariant().get(config.variant())) ? previous.byVariant().get(config.variant()) : config);
+            if (previous.hasSameConfigs(configs)) {
+                return false;
+            }
+        }
+
+        publish(configs);
+        return true;
     }
 
-    private static void saveConfigData() {
+    /**
+     * Publish the modified configs then save them, must be called holding the class lock
+     */
+    private static void saveConfigData(List<FinderConfigData> configs) {
+        publish(configs);
+
         JsonArray finderArray = new JsonArray();
-        for (FinderConfigData config : instances) {
+        for (FinderConfigData config : configs) {
             JsonObject configData = new JsonObject();
             configData.addProperty("uuid", config.uuid().toString());
             configData.addProperty("variant", config.variant());
@@ -83,40 +191,78 @@ public record FinderConfigData(
         EventData.saveConfigEventData(EventMod.finderKey, finderArray);
     }
 
-    public static boolean addNewConfig(FinderConfigData config) {
-        if (getInstance().stream().noneMatch(finderConfig -> finderConfig.variant().equals(config.variant()))) {
-            instances.add(config);
-            saveConfigData();
-            return true;
+    public static synchronized boolean addNewConfig(FinderConfigData config) {
+        if (getByVariant(config.variant()) != null) {
+            return false;
         }
 
-        return false;
+        List<FinderConfigData> configs = new ArrayList<>(getInstance());
+        configs.add(config);
+        saveConfigData(configs);
+        return true;
     }
 
-    public static boolean removeExistingConfig(String variant) {
-        boolean removed = getInstance().removeIf(config -> config.variant().equals(variant));
+    public static synchronized boolean removeExistingConfig(String variant) {
+        List<FinderConfigData> configs = new ArrayList<>(getInstance());
+        boolean removed = configs.removeIf(config -> config.variant().equals(variant));
         if (removed) {
-            saveConfigData();
+            saveConfigData(configs);
         }
 
         return removed;
     }
 
-    public static boolean modifyExistingConfig(String variant, FinderConfigData newConfig) {
-        Optional<FinderConfigData> configToUpdate = getInstance().stream()
-                .filter(config -> config.variant().equals(variant))
-                .findFirst();
+    public static synchronized boolean modifyExistingConfig(String variant, FinderConfigData newConfig) {
+        FinderConfigData currentConfig = getByVariant(variant);
+        if (currentConfig == null) {
+            return false;
+        }
 
-        if (configToUpdate.isPresent()) {
-            FinderConfigData currentConfig = configToUpdate.get();
-            FinderConfigData updatedConfig = new FinderConfigData.Builder().from(currentConfig).from(newConfig).build();
+        FinderConfigData updatedConfig = new FinderConfigData.Builder().from(currentConfig).from(newConfig).build();
+        List<FinderConfigData> configs = new ArrayList<>(getInstance());
+        configs.set(configs.indexOf(currentConfig), updatedConfig);
+        saveConfigData(configs);
+        return true;
+    }
 
-            instances.set(instances.indexOf(currentConfig), updatedConfig);
-            saveConfigData();
-            return true;
+    /**
+     * Immutable view of the configs with the indexes derived from them, replaced as a whole on every change
+     */
+    private record Snapshot(List<FinderConfigData> configs, Map<String, FinderConfigData> byVariant, VariantIndex variants, Map<UUID, FinderConfigData> byHead, Map<String, EffectPreset> foundEffects) {
+        private static Snapshot of(List<FinderConfigData> configs, Snapshot previous) {
+            Map<String, FinderConfigData> byVariant = new HashMap<>();
+            Map<UUID, FinderConfigData> byHead = new HashMap<>();
+            for (FinderConfigData config : configs) {
+                byVariant.putIfAbsent(config.variant(), config);
+                byHead.putIfAbsent(config.uuid(), config);
+            }
+
+            // The presets of the unchanged variants and the variant index are kept, only the lookup maps are rebuilt
+            Map<String, EffectPreset> foundEffects = new HashMap<>();
+            byVariant.forEach((variant, config) -> foundEffects.put(variant, previous != null && previous.byVariant().get(variant) == config
+                    ? previous.foundEffects().get(variant)
+                    : EffectPreset.of(config.foundMessage(), config.sound(), config.particle())));
+
+            VariantIndex variants = previous != null && byVariant.keySet().equals(previous.byVariant().keySet()) ? previous.variants() : VariantIndex.build(byVariant.keySet());
+            return new Snapshot(List.copyOf(configs), Map.copyOf(byVariant), variants, Map.copyOf(byHead), Map.copyOf(foundEffects));
         }
 
-        return false;
+        /**
+         * Check if the configs are the same instances, in the same order, as the ones of this snapshot
+         */
+        private boolean hasSameConfigs(List<FinderConfigData> others) {
+            if (others.size() != configs.size()) {
+                return false;
+            }
+
+            for (int i = 0; i < others.size(); i++) {
+                if (others.get(i) != configs.get(i)) {
+                    return false;
+                }
+            }
+
+            return true;
+        }
     }
 
     public static class Builder {
@@ -5,70 +5,107 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.hardel.eventmod.EventMod;
 import com.hardel.eventmod.event.EventData;
+import com.hardel.eventmod.event.PlayerDataCache;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
 import net.minecraft.util.math.BlockPos;
 
 import java.util.*;
+import java.util.concurrent.Executor;
 
+/**
+ * Blocks found by each player, stored per variant as a set of packed {@link BlockPos#asLong()} positions
+ */
 public class FinderPlayerData {
-    private static final Map<UUID, List<FinderPlayerData>> instances = new HashMap<>();
-    private final BlockPos pos;
-    private final String variant;
+    private static final PlayerDataCache<Map<String, LongOpenHashSet>> instances = new PlayerDataCache<>();
 
-    private static List<FinderPlayerData> getInstances(UUID playerUuid) {
-        if (!instances.containsKey(playerUuid)) {
-            loadPlayerData(playerUuid);
+    private static Map<String, LongOpenHashSet> getInstances(UUID playerUuid) {
+        Map<String, LongOpenHashSet> instance = instances.get(playerUuid);
+        if (instance == null) {
+            instance = readPlayerData(playerUuid);
+            instances.put(playerUuid, instance);
         }
 
-        instances.computeIfAbsent(playerUuid, k -> new ArrayList<>());
-        return instances.get(playerUuid);
+        return instance;
+    }
+
+    public static PlayerDataCache<Map<String, LongOpenHashSet>> getCache() {
+        return instances;
+    }
+
+    /**
+     * Pin the data of the player while it is online, and preload it off the server thread
+     */
+    public static void onJoin(ServerPlayNetworkHandler handler, PacketSender sender, MinecraftServer server) {
+        join(handler.getPlayer().getUuid(), server);
+    }
+
+    /**
+     * Pin the data of the player and preload it off the server thread
+     *
+     * @param serverExecutor runs the publication of the data on the server thread
+     */
+    public static void join(UUID playerUuid, Executor serverExecutor) {
+        instances.pin(playerUuid);
+        instances.preload(playerUuid, FinderPlayerData::readPlayerData, serverExecutor);
     }
 
-    private FinderPlayerData(BlockPos pos, String variant) {
-        this.pos = pos;
-        this.variant = variant;
+    /**
+     * Unload the data of the player, every change is already saved
+     */
+    public static void onDisconnect(ServerPlayNetworkHandler handler, MinecraftServer server) {
+        instances.unload(handler.getPlayer().getUuid());
     }
 
-    private static void loadPlayerData(UUID playerUuid) {
+    private static Map<String, LongOpenHashSet> readPlayerData(UUID playerUuid) {
         JsonArray loadedConfigs = EventData.loadPlayerEventData(playerUuid, EventMod.finderKey);
-        List<FinderPlayerData> data = new ArrayList<>();
+        Map<String, LongOpenHashSet> data = new HashMap<>();
 
         for (JsonElement element : loadedConfigs) {
             JsonObject blockData = element.getAsJsonObject();
             String variant = blockData.get("variant").getAsString();
             JsonArray position = blockData.getAsJsonArray("position");
 
-            BlockPos pos = new BlockPos(position.get(0).getAsInt(), position.get(1).getAsInt(), position.get(2).getAsInt());
-            data.add(new FinderPlayerData(pos, variant));
+            long pos = BlockPos.asLong(position.get(0).getAsInt(), position.get(1).getAsInt(), position.get(2).getAsInt());
+            data.computeIfAbsent(variant, k -> new LongOpenHashSet()).add(pos);
         }
 
-        instances.put(playerUuid, data);
+        return data;
     }
 
+    /**
+     * Rewrite every found block of the player, only needed when blocks are removed
+     */
     private static void savePlayerData(UUID playerUuid) {
-        List<FinderPlayerData> instance = instances.get(playerUuid);
+        Map<String, LongOpenHashSet> instance = instances.peek(playerUuid);
         if (instance == null) {
-            instance = new ArrayList<>();
+            instance = new HashMap<>();
         }
 
         JsonArray data = new JsonArray();
-        for (FinderPlayerData entry : instance) {
-            if (entry.pos == null || entry.variant == null) {
-                continue;
+        for (Map.Entry<String, LongOpenHashSet> entry : instance.entrySet()) {
+            String variant = entry.getKey();
+            for (LongIterator iterator = entry.getValue().iterator(); iterator.hasNext(); ) {
+                data.add(toJson(variant, iterator.nextLong()));
             }
+        }
 
-            JsonObject object = new JsonObject();
-            JsonArray position = new JsonArray();
-            position.add(entry.pos.getX());
-            position.add(entry.pos.getY());
-            position.add(entry.pos.getZ());
+        EventData.queuePlayerEventData(playerUuid, EventMod.finderKey, data);
+    }
 
-            object.add("position", position);
-            object.addProperty("variant", entry.variant);
-            data.add(object);
-        }
+    private static JsonObject toJson(String variant, long pos) {
+        JsonObject object = new JsonObject();
+        JsonArray position = new JsonArray();
+        position.add(BlockPos.unpackLongX(pos));
+        position.add(BlockPos.unpackLongY(pos));
+        position.add(BlockPos.unpackLongZ(pos));
 
-        EventData.savePlayerEventData(playerUuid, EventMod.finderKey, data);
-        loadPlayerData(playerUuid);
+        object.add("position", position);
+        object.addProperty("variant", variant);
+        return object;
     }
 
     /**
@@ -79,16 +116,16 @@ public class FinderPlayerData {
      * @return true if the block is added, false if the block is already found
      */
     public static boolean tryAddNewEntry(BlockPos pos, String variant, UUID playerUuid) {
-        List<FinderPlayerData> instance = getInstances(playerUuid);
-        FinderPlayerData finderBlock = new FinderPlayerData(pos, variant);
-
-        if (!instance.contains(finderBlock)) {
-            instance.add(finderBlock);
-            savePlayerData(playerUuid);
-            return true;
+        LongOpenHashSet found = getInstances(playerUuid).computeIfAbsent(variant, k -> new LongOpenHashSet());
+        if (!found.add(pos.asLong())) {
+            return false;
         }
 
-        return false;
+        // The set stays the source of truth, only the new block is queued and appended to the journal off the tick
+        JsonArray entry = new JsonArray(1);
+        entry.add(toJson(variant, pos.asLong()));
+        EventData.appendPlayerEventData(playerUuid, EventMod.finderKey, entry);
+        return true;
     }
 
     /**
@@ -98,12 +135,18 @@ public class FinderPlayerData {
      * @return the count of found blocks
      */
     public static int getFoundBlocksCountByVariant(String variant, UUID playerUuid) {
-        List<FinderPlayerData> instance = getInstances(playerUuid);
-        if (instance == null) {
-            return 0;
+        Map<String, LongOpenHashSet> instance = getInstances(playerUuid);
+        if (variant != null) {
+            LongOpenHashSet found = instance.get(variant);
+            return found != null ? found.size() : 0;
         }
 
-        return variant == null ? instance.size() : (int) instance.stream().filter(block -> Objects.equals(block.variant, variant)).count();
+        int count = 0;
+        for (LongOpenHashSet found : instance.values()) {
+            count += found.size();
+        }
+
+        return count;
     }
 
     /**
@@ -112,16 +155,13 @@ public class FinderPlayerData {
      * @param variant the variant to reset
      */
     public static void resetByVariant(String variant, UUID playerUuid) {
-        List<FinderPlayerData> instance = instances.computeIfAbsent(playerUuid, k -> new ArrayList<>());
-        instance.removeIf(block -> variant == null || Objects.equals(block.variant, variant));
-        savePlayerData(playerUuid);
-    }
+        Map<String, LongOpenHashSet> instance = getInstances(playerUuid);
+        if (variant == null) {
+            instance.clear();
+        } else {
+            instance.remove(variant);
+        }
 
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        FinderPlayerData that = (FinderPlayerData) o;
-        return Objects.equals(pos, that.pos) && Objects.equals(variant, that.variant);
+        savePlayerData(playerUuid);
     }
-}
\ No newline at end of file
+}
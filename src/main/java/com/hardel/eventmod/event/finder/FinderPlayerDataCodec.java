@@ -0,0 +1,101 @@
+package com.hardel.eventmod.event.finder;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.hardel.eventmod.event.PlayerDataCodec;
+import com.hardel.eventmod.utils.BlockUtils;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketByteBuf;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Binary codec of the finder player data.
+ * Found blocks are grouped by variant so each variant name is written once, and the packed positions of a variant
+ * are sorted and written as varint deltas.
+ */
+public class FinderPlayerDataCodec implements PlayerDataCodec {
+    public static final byte ID = 2;
+    private static final byte VERSION = 1;
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public byte[] encode(JsonArray data) {
+        Map<String, long[]> positions = new LinkedHashMap<>();
+        Map<String, Integer> counts = new LinkedHashMap<>();
+
+        for (JsonElement element : data) {
+            JsonObject entry = element.getAsJsonObject();
+            String variant = entry.get("variant").getAsString();
+            JsonArray position = entry.getAsJsonArray("position");
+            long packed = BlockPos.asLong(position.get(0).getAsInt(), position.get(1).getAsInt(), position.get(2).getAsInt());
+
+            int count = counts.getOrDefault(variant, 0);
+            long[] variantPositions = positions.computeIfAbsent(variant, key -> new long[8]);
+            if (count == variantPositions.length) {
+                variantPositions = Arrays.copyOf(variantPositions, count * 2);
+                positions.put(variant, variantPositions);
+            }
+
+            variantPositions[count] = packed;
+            counts.put(variant, count + 1);
+        }
+
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer(8 + data.size() * 4));
+        buf.writeByte(VERSION);
+        buf.writeVarInt(positions.size());
+
+        for (Map.Entry<String, long[]> entry : positions.entrySet()) {
+            int count = counts.get(entry.getKey());
+            long[] variantPositions = entry.getValue();
+            Arrays.sort(variantPositions, 0, count);
+
+            buf.writeString(entry.getKey());
+            buf.writeVarInt(count);
+            long previous = 0;
+            for (int i = 0; i < count; i++) {
+                buf.writeVarLong(variantPositions[i] - previous);
+                previous = variantPositions[i];
+            }
+        }
+
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        return bytes;
+    }
+
+    @Override
+    public JsonArray decode(byte[] payload) {
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.wrappedBuffer(payload));
+        byte version = buf.readByte();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported finder player data version: " + version);
+        }
+
+        JsonArray data = new JsonArray();
+        int variants = buf.readVarInt();
+        for (int i = 0; i < variants; i++) {
+            String variant = buf.readString();
+            int count = buf.readVarInt();
+            long packed = 0;
+
+            for (int j = 0; j < count; j++) {
+                packed += buf.readVarLong();
+                JsonObject entry = new JsonObject();
+                entry.add("position", BlockUtils.posToJson(BlockPos.fromLong(packed)));
+                entry.addProperty("variant", variant);
+                data.add(entry);
+            }
+        }
+
+        return data;
+    }
+}
@@ -0,0 +1,146 @@
+package com.hardel.eventmod.event.parkour;
+
+import com.hardel.eventmod.utils.EffectPreset;
+import net.minecraft.particle.ParticleTypes;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkSectionPos;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Spatial hash grid of every checkpoint zone, bucketed by chunk section.
+ * A block position resolves to the few checkpoints overlapping its section without scanning every course.
+ */
+public final class CheckpointIndex {
+    private static final Zone[] EMPTY = new Zone[0];
+    private final Map<Long, Zone[]> cells;
+
+    private CheckpointIndex(Map<Long, Zone[]> cells) {
+        this.cells = cells;
+    }
+
+    /**
+     * Build the index from the given configs, the zones are normalized so that min is always lower than max.
+     *
+     * @param configs the parkour configs to index
+     * @return the built index
+     */
+    public static CheckpointIndex build(List<ParkourConfigData> configs) {
+        Map<Long, List<Zone>> buckets = new HashMap<>();
+        for (ParkourConfigData config : configs) {
+            forEachZone(config, zone -> forEachSection(zone, key -> buckets.computeIfAbsent(key, k -> new ArrayList<>()).add(zone)));
+        }
+
+        Map<Long, Zone[]> cells = new HashMap<>(buckets.size() * 2);
+        buckets.forEach((key, zones) -> cells.put(key, zones.toArray(EMPTY)));
+        return new CheckpointIndex(cells);
+    }
+
+    /**
+     * Build a new index from this one, touching only the sections covered by the removed and added configs
+     *
+     * @param removed the configs to drop, matched by identity
+     * @param added   the configs to index
+     * @return the updated index, this one is left unchanged
+     */
+    public CheckpointIndex with(Collection<ParkourConfigData> removed, Collection<ParkourConfigData> added) {
+        Map<Long, Zone[]> updated = new HashMap<>(cells);
+        Set<ParkourConfigData> removedConfigs = Collections.newSetFromMap(new IdentityHashMap<>());
+        removedConfigs.addAll(removed);
+
+        for (ParkourConfigData config : removed) {
+            forEachZone(config, zone -> forEachSection(zone, key -> {
+                Zone[] zones = updated.get(key);
+                if (zones == null) {
+                    return;
+                }
+
+                Zone[] kept = Arrays.stream(zones).filter(candidate -> !removedConfigs.contains(candidate.config())).toArray(Zone[]::new);
+                if (kept.length == 0) {
+                    updated.remove(key);
+                } else if (kept.length != zones.length) {
+                    updated.put(key, kept);
+                }
+            }));
+        }
+
+        for (ParkourConfigData config : added) {
+            forEachZone(config, zone -> forEachSection(zone, key -> {
+                Zone[] zones = updated.getOrDefault(key, EMPTY);
+                Zone[] grown = Arrays.copyOf(zones, zones.length + 1);
+                grown[zones.length] = zone;
+                updated.put(key, grown);
+            }));
+        }
+
+        return new CheckpointIndex(updated);
+    }
+
+    private static void forEachZone(ParkourConfigData config, Consumer<Zone> consumer) {
+        if (config.checkpoints() == null) {
+            return;
+        }
+
+        for (CheckpointData checkpoint : config.checkpoints()) {
+            consumer.accept(Zone.of(config, checkpoint));
+        }
+    }
+
+    /**
+     * Get the candidate zones for a block position, the caller still has to check {@link Zone#contains}.
+     *
+     * @return the zones overlapping the chunk section of the position, never null
+     */
+    public Zone[] query(int x, int y, int z) {
+        Zone[] zones = cells.get(ChunkSectionPos.asLong(x >> 4, y >> 4, z >> 4));
+        return zones != null ? zones : EMPTY;
+    }
+
+    private static void forEachSection(Zone zone, SectionConsumer consumer) {
+        for (int sx = zone.minX >> 4; sx <= zone.maxX >> 4; sx++) {
+            for (int sy = zone.minY >> 4; sy <= zone.maxY >> 4; sy++) {
+                for (int sz = zone.minZ >> 4; sz <= zone.maxZ >> 4; sz++) {
+                    consumer.accept(ChunkSectionPos.asLong(sx, sy, sz));
+                }
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface SectionConsumer {
+        void accept(long key);
+    }
+
+    public record Zone(
+            ParkourConfigData config,
+            CheckpointData checkpoint,
+            EffectPreset success,
+            int minX,
+            int minY,
+            int minZ,
+            int maxX,
+            int maxY,
+            int maxZ
+    ) {
+        private static Zone of(ParkourConfigData config, CheckpointData checkpoint) {
+            BlockPos start = checkpoint.start();
+            BlockPos end = checkpoint.end();
+            return new Zone(
+                    config,
+                    checkpoint,
+                    EffectPreset.of(checkpoint.successMessage(), checkpoint.sound(), ParticleTypes.HAPPY_VILLAGER),
+                    Math.min(start.getX(), end.getX()),
+                    Math.min(start.getY(), end.getY()),
+                    Math.min(start.getZ(), end.getZ()),
+                    Math.max(start.getX(), end.getX()),
+                    Math.max(start.getY(), end.getY()),
+                    Math.max(start.getZ(), end.getZ())
+            );
+        }
+
+        public boolean contains(int x, int y, int z) {
+            return x >= minX && x <= maxX && y >= minY && y <= maxY && z >= minZ && z <= maxZ;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.hardel.eventmod.event.parkour;
+
+import net.minecraft.util.math.BlockPos;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Checkpoint indexes of one course compiled into sorted tables, so validating a checkpoint never streams or sorts.
+ * When the indexes are dense enough, a table over their range gives the next index of any value in constant time,
+ * otherwise the sorted array is binary searched.
+ */
+public final class CheckpointOrder {
+    public static final int NONE = Integer.MIN_VALUE;
+    private static final CheckpointOrder EMPTY = new CheckpointOrder(new int[0], new BlockPos[0]);
+    private final int[] indexes;
+    private final BlockPos[] respawns;
+    private final int min;
+    // Position in indexes of the first index greater than min + offset, null when the range is too sparse
+    private final int[] nextPositions;
+
+    private CheckpointOrder(int[] indexes, BlockPos[] respawns) {
+        this.indexes = indexes;
+        this.respawns = respawns;
+        this.min = indexes.length > 0 ? indexes[0] : 0;
+
+        long range = indexes.length > 0 ? (long) indexes[indexes.length - 1] - min + 1 : 0;
+        if (range > 0 && range <= indexes.length * 4L + 64) {
+            nextPositions = new int[(int) range];
+            int position = 0;
+            for (int offset = 0; offset < range; offset++) {
+                while (position < indexes.length && indexes[position] <= min + offset) {
+                    position++;
+                }
+
+                nextPositions[offset] = position;
+            }
+        } else {
+            nextPositions = null;
+        }
+    }
+
+    /**
+     * Compile the checkpoints of the course, the first checkpoint wins when several share an index
+     *
+     * @param checkpoints the checkpoints of the course
+     * @return the compiled order
+     */
+    public static CheckpointOrder build(List<CheckpointData> checkpoints) {
+        if (checkpoints == null || checkpoints.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<CheckpointData> sorted = new ArrayList<>();
+        for (CheckpointData checkpoint : checkpoints) {
+            if (checkpoint.index() != null) {
+                sorted.add(checkpoint);
+            }
+        }
+
+        // Stable sort, so the first checkpoint of an index stays in front of its duplicates
+        sorted.sort(Comparator.comparingInt(CheckpointData::index));
+        int[] indexes = new int[sorted.size()];
+        BlockPos[] respawns = new BlockPos[sorted.size()];
+        int count = 0;
+        for (CheckpointData checkpoint : sorted) {
+            if (count > 0 && indexes[count - 1] == checkpoint.index()) {
+                continue;
+            }
+
+            indexes[count] = checkpoint.index();
+            respawns[count] = checkpoint.respawn();
+            count++;
+        }
+
+        return new CheckpointOrder(Arrays.copyOf(indexes, count), Arrays.copyOf(respawns, count));
+    }
+
+    /**
+     * Get the smallest checkpoint index greater than the current one
+     *
+     * @return the next index, or {@link #NONE} if the current one is the last
+     */
+    public int next(int current) {
+        int position = nextPosition(current);
+        return position < indexes.length ? indexes[position] : NONE;
+    }
+
+    /**
+     * Get the index of the checkpoint before the last one
+     *
+     * @return the penultimate index, or {@link #NONE} if the course has less than two checkpoints
+     */
+    public int penultimate() {
+        return indexes.length >= 2 ? indexes[indexes.length - 2] : NONE;
+    }
+
+    /**
+     * Get the respawn position of the checkpoint
+     *
+     * @return the respawn position, or null if no checkpoint has this index
+     */
+    public BlockPos respawn(int index) {
+        int position = nextPosition(index) - 1;
+        return position >= 0 && indexes[position] == index ? respawns[position] : null;
+    }
+
+    private int nextPosition(int current) {
+        if (indexes.length == 0 || current < min) {
+            return 0;
+        }
+
+        if (current >= indexes[indexes.length - 1]) {
+            return indexes.length;
+        }
+
+        if (nextPositions != null) {
+            return nextPositions[current - min];
+        }
+
+        int position = Arrays.binarySearch(indexes, current);
+        return position >= 0 ? position + 1 : -position - 1;
+    }
+}
@@ -1,58 +1,135 @@
 package com.hardel.eventmod.event.parkour;
 
+import com.hardel.eventmod.event.EventStats;
 import com.hardel.eventmod.utils.BlockUtils;
-import com.hardel.eventmod.utils.ParticleUtils;
-import com.hardel.eventmod.utils.PlaySoundUtils;
-import net.minecraft.particle.ParticleTypes;
+import com.hardel.eventmod.utils.EffectQueue;
 import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
+import net.minecraft.util.math.BlockPos;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 public class ParkourAction {
+    /**
+     * Returned by {@link #step} when the data of the player is still being preloaded
+     */
+    public static final int NOT_LOADED = -2;
+    private static final Map<UUID, PlayerZoneState> zoneStates = new HashMap<>();
+
     public static void onTick(MinecraftServer server) {
-        List<ParkourConfigData> instances = ParkourConfigData.getInstance();
+        long start = System.nanoTime();
+        try {
+            tick(server);
+        } finally {
+            EventStats.PARKOUR_TICK.record(start);
+        }
+    }
+
+    private static void tick(MinecraftServer server) {
+        if (!ParkourConfigData.isLoaded()) {
+            return;
+        }
 
         server.getPlayerManager().getPlayerList().forEach(player -> {
-            for (ParkourConfigData config : instances) {
-                List<CheckpointData> checkpoints = config.checkpoints();
-
-                for (CheckpointData checkpoint : checkpoints) {
-                    if (BlockUtils.isPlayerInZone(player, checkpoint.start(), checkpoint.end())) {
-                        CheckpointAction response = switch (checkpoint.type()) {
-                            case START ->
-                                    ParkourPlayerData.startCheckpoint(config.variant(), player.getUuid(), server.getTicks(), checkpoint.index());
-                            case END ->
-                                    ParkourPlayerData.finishCheckpoint(config.variant(), player, server.getTicks(), checkpoint.index());
-                            case CHECKPOINT ->
-                                    ParkourPlayerData.updateCheckpoints(config.variant(), player.getUuid(), checkpoint.index());
-                        };
-
-                        switch (response) {
-                            case GOOD_PATH -> {
-                                player.sendMessage(checkpoint.successMessage(), true);
-                                PlaySoundUtils.playSound(checkpoint.sound(), player, 1, 1);
-                                ParticleUtils.spawnParticles(player, player.getBlockPos(), ParticleTypes.HAPPY_VILLAGER);
-                            }
-                            case NOT_GOOD_PATH -> player.sendMessage(config.failMessage(), true);
-                        }
-                    }
-
-                    ParkourPlayerData instance = ParkourPlayerData.getInstance(player.getUuid(), config.variant());
-                    if (instance.isParticipating() == null) {
-                        continue;
-                    }
-
-                    if (!(BlockUtils.isPlayerInZone(player, config.start(), config.end())) && instance.isParticipating()) {
-                        ParkourPlayerData.setParticipating(config.variant(), player.getUuid(), false);
-                    }
-
-                    if (instance.isParticipating() && !instance.isFinished()) {
-                        int second = (server.getTicks() - instance.startTicks()) / 20;
-                        player.sendMessage(Text.of("Temps écoulé: " + second + " secondes"), true);
-                    }
-                }
+            long pos = BlockPos.asLong(BlockUtils.toBlockCoord(player.getX()), BlockUtils.toBlockCoord(player.getY()), BlockUtils.toBlockCoord(player.getZ()));
+            int timer = step(player.getUuid(), pos, server.getTicks(), (zone, response) -> sendCheckpointFeedback(server, player, zone, response));
+            if (timer != NOT_LOADED) {
+                ParkourHud.setTimer(player, timer);
             }
         });
+
+        ParkourHud.flush(server);
+    }
+
+    /**
+     * Move one player to its block position for this tick: trigger the checkpoints it entered, stop its participation
+     * in the courses it left and compute its timer. Used by the server tick and by the load simulator.
+     *
+     * @param playerUuid UUID of the player
+     * @param pos        the packed block position of the player
+     * @param ticks      the current server ticks
+     * @param listener   receives the result of every checkpoint the player entered
+     * @return the seconds since the player started its current course, -1 if it is not running one,
+     * or {@link #NOT_LOADED} if its data is still being preloaded
+     */
+    public static int step(UUID playerUuid, long pos, int ticks, CheckpointListener listener) {
+        if (!ParkourPlayerData.isLoaded(playerUuid)) {
+            return NOT_LOADED;
+        }
+
+        List<ParkourConfigData> instances = ParkourConfigData.getInstance();
+        CheckpointIndex checkpointIndex = ParkourConfigData.getCheckpointIndex();
+        PlayerZoneState state = zoneStates.computeIfAbsent(playerUuid, uuid -> new PlayerZoneState());
+        if (state.isOutdated(pos, checkpointIndex)) {
+            EventStats.PARKOUR_TICK.miss();
+            int x = BlockPos.unpackLongX(pos);
+            int y = BlockPos.unpackLongY(pos);
+            int z = BlockPos.unpackLongZ(pos);
+            for (CheckpointIndex.Zone zone : state.update(pos, checkpointIndex, instances, x, y, z)) {
+                listener.onCheckpoint(zone, applyCheckpoint(playerUuid, zone, ticks));
+            }
+        } else {
+            EventStats.PARKOUR_TICK.hit();
+        }
+
+        int timer = -1;
+        for (ParkourConfigData config : instances) {
+            ParkourPlayerData instance = ParkourPlayerData.getInstance(playerUuid, config.variant());
+            if (instance.isParticipating() == null) {
+                continue;
+            }
+
+            if (!state.isInCourse(config) && instance.isParticipating()) {
+                ParkourPlayerData.setParticipating(config.variant(), playerUuid, false);
+            }
+
+            if (instance.isParticipating() && !instance.isFinished()) {
+                timer = (ticks - instance.startTicks()) / 20;
+            }
+        }
+
+        return timer;
+    }
+
+    public static void onDisconnect(ServerPlayNetworkHandler handler, MinecraftServer server) {
+        zoneStates.remove(handler.getPlayer().getUuid());
+    }
+
+    private static CheckpointAction applyCheckpoint(UUID playerUuid, CheckpointIndex.Zone zone, int ticks) {
+        String variant = zone.config().variant();
+        CheckpointData checkpoint = zone.checkpoint();
+        return switch (checkpoint.type()) {
+            case START -> ParkourPlayerData.startCheckpoint(variant, playerUuid, ticks, checkpoint.index());
+            case END -> ParkourPlayerData.finishCheckpoint(variant, playerUuid, ticks, checkpoint.index());
+            case CHECKPOINT -> ParkourPlayerData.updateCheckpoints(variant, playerUuid, checkpoint.index());
+        };
+    }
+
+    private static void sendCheckpointFeedback(MinecraftServer server, ServerPlayerEntity player, CheckpointIndex.Zone zone, CheckpointAction response) {
+        ParkourConfigData config = zone.config();
+        switch (response) {
+            case GOOD_PATH -> {
+                EffectQueue.play(player, zone.success(), player.getBlockPos());
+                if (zone.checkpoint().type() == PortalType.END) {
+                    ParkourPlayerData data = ParkourPlayerData.getInstance(player.getUuid(), config.variant());
+                    int second = (data.finishTicks() - data.startTicks()) / 20;
+                    EffectQueue.sendMessage(player, Text.of("You have finished the parkour, with a time of " + second + " seconds"), false);
+                }
+            }
+            case NOT_GOOD_PATH -> EffectQueue.sendMessage(player, config.failMessage(), true);
+        }
+    }
+
+    /**
+     * Receives the result of the checkpoints entered during a {@link #step}
+     */
+    @FunctionalInterface
+    public interface CheckpointListener {
+        void onCheckpoint(CheckpointIndex.Zone zone, CheckpointAction response);
     }
-}
\ No newline at end of file
+}
@@ -5,15 +5,13 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.hardel.eventmod.EventMod;
 import com.hardel.eventmod.event.EventData;
+import com.hardel.eventmod.event.VariantIndex;
 import com.hardel.eventmod.utils.BlockUtils;
 import net.minecraft.registry.DynamicRegistryManager;
 import net.minecraft.text.Text;
 import net.minecraft.util.math.BlockPos;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
 
 public record ParkourConfigData(
         String variant,
@@ -23,21 +21,104 @@ public record ParkourConfigData(
         BlockPos start,
         BlockPos end
 ) {
-    private static final List<ParkourConfigData> instances = new ArrayList<>();
+    private static volatile Snapshot snapshot;
 
     public static ParkourConfigData.Builder builder() {
         return new ParkourConfigData.Builder();
     }
 
+    /**
+     * Get every config, as an immutable snapshot that is safe to read from any thread
+     */
     public static List<ParkourConfigData> getInstance() {
-        if (instances.isEmpty()) {
-            loadConfigData();
+        return getSnapshot().configs();
+    }
+
+    /**
+     * Get the config of the variant
+     *
+     * @return the config, or null if the variant does not exist
+     */
+    public static ParkourConfigData getByVariant(String variant) {
+        return getSnapshot().byVariant().get(variant);
+    }
+
+    /**
+     * Get the prefix-searchable index of the variant names
+     */
+    public static VariantIndex getVariantIndex() {
+        return getSnapshot().variants();
+    }
+
+    /**
+     * Get the compiled checkpoint order of the variant
+     *
+     * @return the order, or null if the variant does not exist
+     */
+    public static CheckpointOrder getCheckpointOrder(String variant) {
+        return getSnapshot().orders().get(variant);
+    }
+
+    /**
+     * Get the spatial index of every checkpoint, rebuilt each time the configs change
+     *
+     * @return the checkpoint index
+     */
+    public static CheckpointIndex getCheckpointIndex() {
+        return getSnapshot().checkpointIndex();
+    }
+
+    /**
+     * Check if the configs were loaded at least once, they may still be empty
+     */
+    public static boolean isLoaded() {
+        return snapshot != null;
+    }
+
+    /**
+     * Read the config file again and publish its content, called by the config lifecycle
+     *
+     * @return true if a new snapshot was published, false if the file holds the configs already published
+     */
+    public static synchronized boolean reload() {
+        try {
+            return loadConfigData();
+        } catch (RuntimeException e) {
+            if (snapshot == null) {
+                // Still mark the configs as loaded, so a broken file is not read again on every access
+                publish(List.of());
+            }
+
+            throw e;
+        }
+    }
+
+    /**
+     * Get the current snapshot, loading it on the caller thread if the background load has not run yet
+     */
+    private static Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (ParkourConfigData.class) {
+                if (snapshot == null) {
+                    reload();
+                }
+
+                current = snapshot;
+            }
         }
 
-        return instances;
+        return current;
+    }
+
+    /**
+     * Publish a new snapshot with its indexes, readers holding the previous one keep a consistent view
+     */
+    private static void publish(List<ParkourConfigData> configs) {
+        snapshot = Snapshot.of(configs, snapshot);
     }
 
-    private static void loadConfigData() {
+    private static boolean loadConfigData() {
         JsonArray loadedConfigs = EventData.loadConfigEventData(EventMod.ParkourKey);
         List<ParkourConfigData> configs = new ArrayList<>();
 
@@ -56,13 +137,27 @@ public record ParkourConfigData(
             configs.add(ParkourConfigData.builder().variant(variant).failMessage(failMessage).checkpoints(checkpoints).winCondition(winCondition).start(start).end(end).build());
         }
 
-        instances.clear();
-        instances.addAll(configs);
+        Snapshot previous = snapshot;
+        if (previous != null) {
+            // Keep the instances of the unchanged variants, so only the edited ones are swapped and reindexed
+            configs.replaceAll(config -> config.equals(previous.byVariant().get(config.variant())) ? previous.byVariant().get(config.variant()) : config);
+            if (previous.hasSameConfigs(configs)) {
+                return false;
+            }
+        }
+
+        publish(configs);
+        return true;
     }
 
-    private static void saveConfigData() {
+    /**
+     * Publish the modified configs then save them, must be called holding the class lock
+     */
+    private static void saveConfigData(List<ParkourConfigData> configs) {
+        publish(configs);
+
         JsonArray configArray = new JsonArray();
-        for (ParkourConfigData config : instances) {
+        for (ParkourConfigData config : configs) {
             JsonObject configData = new JsonObject();
             configData.addProperty("variant", config.variant());
             configData.addProperty("fail_message", Text.Serialization.toJsonString(config.failMessage(), DynamicRegistryManager.EMPTY));
@@ -77,109 +172,148 @@ public record ParkourConfigData(
         EventData.saveConfigEventData(EventMod.ParkourKey, configArray);
     }
 
-    public static boolean addNewConfig(ParkourConfigData config) {
-        if (getInstance().stream().noneMatch(finderConfig -> finderConfig.variant().equals(config.variant()))) {
-            instances.add(config);
-            saveConfigData();
-            return true;
+    /**
+     * Replace the config of the variant in a copy of the current configs, then publish and save it
+     */
+    private static void replaceConfig(ParkourConfigData currentConfig, ParkourConfigData updatedConfig) {
+        List<ParkourConfigData> configs = new ArrayList<>(getInstance());
+        configs.set(configs.indexOf(currentConfig), updatedConfig);
+        saveConfigData(configs);
+    }
+
+    public static synchronized boolean addNewConfig(ParkourConfigData config) {
+        if (getByVariant(config.variant()) != null) {
+            return false;
         }
 
-        return false;
+        List<ParkourConfigData> configs = new ArrayList<>(getInstance());
+        configs.add(config);
+        ParkourLeaderboard.onAddVariant(config.variant(), config.winCondition());
+        saveConfigData(configs);
+        return true;
     }
 
-    public static boolean removeExistingConfig(String variant) {
-        boolean removed = getInstance().removeIf(config -> config.variant().equals(variant));
+    public static synchronized boolean removeExistingConfig(String variant) {
+        List<ParkourConfigData> configs = new ArrayList<>(getInstance());
+        boolean removed = configs.removeIf(config -> config.variant().equals(variant));
         if (removed) {
-            saveConfigData();
+            ParkourLeaderboard.onRemoveVariant(variant);
+            saveConfigData(configs);
         }
 
         return removed;
     }
 
-    public static boolean modifyExistingConfig(String variant, ParkourConfigData newConfig) {
-        Optional<ParkourConfigData> config = getInstance().stream()
-                .filter(configData -> configData.variant().equals(variant))
-                .findFirst();
+    public static synchronized boolean modifyExistingConfig(String variant, ParkourConfigData newConfig) {
+        ParkourConfigData currentConfig = getByVariant(variant);
+        if (currentConfig == null) {
+            return false;
+        }
 
-        if (config.isPresent()) {
-            ParkourConfigData currentConfig = config.get();
-            ParkourConfigData updatedConfig = new ParkourConfigData.Builder().from(currentConfig).from(newConfig).build();
+        replaceConfig(currentConfig, new ParkourConfigData.Builder().from(currentConfig).from(newConfig).build());
+        return true;
+    }
 
-            instances.set(instances.indexOf(currentConfig), updatedConfig);
-            saveConfigData();
-            return true;
+    public static synchronized boolean addCheckpoint(String variant, CheckpointData checkpoint) {
+        ParkourConfigData currentConfig = getByVariant(variant);
+        if (currentConfig == null) {
+            return false;
         }
 
-        return false;
+        List<CheckpointData> checkpoints = new ArrayList<>(currentConfig.checkpoints());
+        if (checkpoints.stream().anyMatch(checkpointData -> Objects.equals(checkpointData.index(), checkpoint.index()))) {
+            return false;
+        }
+
+        checkpoints.add(checkpoint);
+        replaceConfig(currentConfig, new ParkourConfigData.Builder().from(currentConfig).checkpoints(checkpoints).build());
+        return true;
     }
 
-    public static boolean addCheckpoint(String variant, CheckpointData checkpoint) {
-        Optional<ParkourConfigData> config = getInstance().stream()
-                .filter(configData -> configData.variant().equals(variant))
-                .findFirst();
+    public static synchronized boolean removeCheckpoint(String variant, int index) {
+        ParkourConfigData currentConfig = getByVariant(variant);
+        if (currentConfig == null) {
+            return false;
+        }
 
-        if (config.isPresent()) {
-            ParkourConfigData currentConfig = config.get();
+        List<CheckpointData> checkpoints = new ArrayList<>(currentConfig.checkpoints());
+        checkpoints.removeIf(checkpoint -> checkpoint.index() == index);
 
-            List<CheckpointData> checkpoints = new ArrayList<>(currentConfig.checkpoints());
-            if (checkpoints.stream().anyMatch(checkpointData -> Objects.equals(checkpointData.index(), checkpoint.index()))) {
-                return false;
-            }
+        replaceConfig(currentConfig, new ParkourConfigData.Builder().from(currentConfig).checkpoints(checkpoints).build());
+        return true;
+    }
 
-            checkpoints.add(checkpoint);
-            ParkourConfigData updatedConfig = new ParkourConfigData.Builder().from(currentConfig).checkpoints(checkpoints).build();
+    public static synchronized boolean modifyCheckpoint(String variant, int index, CheckpointData newCheckpoint) {
+        ParkourConfigData currentConfig = getByVariant(variant);
+        if (currentConfig == null) {
+            return false;
+        }
 
-            instances.set(instances.indexOf(currentConfig), updatedConfig);
-            saveConfigData();
-            return true;
+        List<CheckpointData> checkpoints = new ArrayList<>(currentConfig.checkpoints());
+        Optional<CheckpointData> checkpointToUpdate = checkpoints.stream().filter(checkpoint -> checkpoint.index() == index).findFirst();
+        if (checkpointToUpdate.isEmpty()) {
+            return false;
         }
 
-        return false;
-    }
+        CheckpointData currentCheckpoint = checkpointToUpdate.get();
+        CheckpointData updatedCheckpoint = new CheckpointData.Builder().index(index).from(currentCheckpoint).from(newCheckpoint).build();
+        checkpoints.set(checkpoints.indexOf(currentCheckpoint), updatedCheckpoint);
 
-    public static boolean removeCheckpoint(String variant, int index) {
-        Optional<ParkourConfigData> config = getInstance().stream()
-                .filter(configData -> configData.variant().equals(variant))
-                .findFirst();
+        replaceConfig(currentConfig, new ParkourConfigData.Builder().from(currentConfig).checkpoints(checkpoints).build());
+        return true;
+    }
 
-        if (config.isPresent()) {
-            ParkourConfigData currentConfig = config.get();
-            List<CheckpointData> checkpoints = new ArrayList<>(currentConfig.checkpoints());
-            checkpoints.removeIf(checkpoint -> checkpoint.index() == index);
+    /**
+     * Immutable view of the configs with the indexes derived from them, replaced as a whole on every change.
+     * The indexes are derived from the previous snapshot, only the configs that are not the same instance
+     * as before are compiled and indexed again.
+     */
+    private record Snapshot(List<ParkourConfigData> configs, Map<String, ParkourConfigData> byVariant, VariantIndex variants, Map<String, CheckpointOrder> orders, CheckpointIndex checkpointIndex) {
+        private static Snapshot of(List<ParkourConfigData> configs, Snapshot previous) {
+            Map<String, ParkourConfigData> byVariant = new HashMap<>();
+            for (ParkourConfigData config : configs) {
+                byVariant.putIfAbsent(config.variant(), config);
+            }
 
-            ParkourConfigData updatedConfig = new ParkourConfigData.Builder().from(currentConfig).checkpoints(checkpoints).build();
-            instances.set(instances.indexOf(currentConfig), updatedConfig);
-            saveConfigData();
-            return true;
-        }
+            if (previous == null) {
+                Map<String, CheckpointOrder> orders = new HashMap<>();
+                byVariant.forEach((variant, config) -> orders.put(variant, CheckpointOrder.build(config.checkpoints())));
+                return new Snapshot(List.copyOf(configs), Map.copyOf(byVariant), VariantIndex.build(byVariant.keySet()), Map.copyOf(orders), CheckpointIndex.build(configs));
+            }
 
-        return false;
-    }
+            Set<ParkourConfigData> before = Collections.newSetFromMap(new IdentityHashMap<>());
+            before.addAll(previous.configs());
+            Set<ParkourConfigData> after = Collections.newSetFromMap(new IdentityHashMap<>());
+            after.addAll(configs);
 
-    public static boolean modifyCheckpoint(String variant, int index, CheckpointData newCheckpoint) {
-        Optional<ParkourConfigData> config = getInstance().stream().filter(configData -> configData.variant().equals(variant)).findFirst();
+            List<ParkourConfigData> removed = previous.configs().stream().filter(config -> !after.contains(config)).toList();
+            List<ParkourConfigData> added = configs.stream().filter(config -> !before.contains(config)).toList();
 
-        if (config.isPresent()) {
-            ParkourConfigData currentConfig = config.get();
-            List<CheckpointData> checkpoints = new ArrayList<>(currentConfig.checkpoints());
-            Optional<CheckpointData> checkpointToUpdate = checkpoints.stream().filter(checkpoint -> checkpoint.index() == index).findFirst();
+            Map<String, CheckpointOrder> orders = new HashMap<>();
+            byVariant.forEach((variant, config) -> orders.put(variant, previous.byVariant().get(variant) == config
+                    ? previous.orders().get(variant)
+                    : CheckpointOrder.build(config.checkpoints())));
 
-            if (checkpointToUpdate.isPresent()) {
-                CheckpointData currentCheckpoint = checkpointToUpdate.get();
-                CheckpointData updatedCheckpoint = new CheckpointData.Builder().index(index).from(currentCheckpoint).from(newCheckpoint).build();
+            VariantIndex variants = byVariant.keySet().equals(previous.byVariant().keySet()) ? previous.variants() : VariantIndex.build(byVariant.keySet());
+            return new Snapshot(List.copyOf(configs), Map.copyOf(byVariant), variants, Map.copyOf(orders), previous.checkpointIndex().with(removed, added));
+        }
 
-                checkpoints.set(checkpoints.indexOf(currentCheckpoint), updatedCheckpoint);
-                ParkourConfigData updatedConfig = new ParkourConfigData.Builder().from(currentConfig).checkpoints(checkpoints).build();
+        /**
+         * Check if the configs are the same instances, in the same order, as the ones of this snapshot
+         */
+        private boolean hasSameConfigs(List<ParkourConfigData> others) {
+            if (others.size() != configs.size()) {
+                return false;
+            }
 
-                instances.set(instances.indexOf(currentConfig), updatedConfig);
-                saveConfigData();
-                return true;
+            for (int i = 0; i < others.size(); i++) {
+                if (others.get(i) != configs.get(i)) {
+                    return false;
+                }
             }
 
-            return false;
+            return true;
         }
-
-        return false;
     }
 
     public static class Builder {
@@ -241,7 +375,7 @@ public record ParkourConfigData(
         }
 
         public ParkourConfigData build() {
-            return new ParkourConfigData(variant, failMessage, checkpoints, winCondition, start, end);
+            return new ParkourConfigData(variant, failMessage, checkpoints != null ? List.copyOf(checkpoints) : null, winCondition, start, end);
         }
     }
 }
\ No newline at end of file
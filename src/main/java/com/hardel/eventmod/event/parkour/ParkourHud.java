@@ -0,0 +1,95 @@
+package com.hardel.eventmod.event.parkour;
+
+import com.hardel.eventmod.utils.EffectQueue;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
+
+import java.util.*;
+
+/**
+ * Action bar timer of the players running a parkour.
+ * The tick logic sets the value to display, it is only sent when it differs from what the player already sees,
+ * and at most {@code eventmod.hud_packet_budget} players are updated per tick, the others on the next ticks.
+ */
+public class ParkourHud {
+    private static final int PACKET_BUDGET = Integer.getInteger("eventmod.hud_packet_budget", 64);
+    private static final int CACHED_SECONDS = 3600;
+    private static final int HIDDEN = -1;
+    private static final Text[] timerTexts = new Text[CACHED_SECONDS];
+    private static final Map<UUID, State> states = new HashMap<>();
+    // Players whose displayed timer is outdated, in the order they became outdated
+    private static final Set<UUID> dirty = new LinkedHashSet<>();
+
+    /**
+     * Set the timer to display to the player
+     *
+     * @param seconds the elapsed seconds, or a negative value when the player is not running
+     */
+    public static void setTimer(ServerPlayerEntity player, int seconds) {
+        UUID playerUuid = player.getUuid();
+        State state = states.computeIfAbsent(playerUuid, uuid -> new State());
+        if (seconds < 0) {
+            // Nothing to clear, the action bar fades by itself, the next run is shown right away
+            state.wanted = HIDDEN;
+            state.displayed = HIDDEN;
+            dirty.remove(playerUuid);
+            return;
+        }
+
+        state.wanted = seconds;
+        if (state.displayed != seconds) {
+            dirty.add(playerUuid);
+        }
+    }
+
+    /**
+     * Send the outdated timers within the packet budget, called once per tick
+     */
+    public static void flush(MinecraftServer server) {
+        int budget = PACKET_BUDGET;
+        Iterator<UUID> iterator = dirty.iterator();
+        while (budget > 0 && iterator.hasNext()) {
+            UUID playerUuid = iterator.next();
+            iterator.remove();
+
+            State state = states.get(playerUuid);
+            ServerPlayerEntity player = server.getPlayerManager().getPlayer(playerUuid);
+            if (state == null || player == null || state.wanted == state.displayed) {
+                continue;
+            }
+
+            // Another action bar message won this tick, the timer is sent again once its value changes
+            if (EffectQueue.sendStatus(player, getTimerText(state.wanted))) {
+                state.displayed = state.wanted;
+                budget--;
+            }
+        }
+    }
+
+    public static void onDisconnect(ServerPlayNetworkHandler handler, MinecraftServer server) {
+        UUID playerUuid = handler.getPlayer().getUuid();
+        states.remove(playerUuid);
+        dirty.remove(playerUuid);
+    }
+
+    private static Text getTimerText(int seconds) {
+        if (seconds >= CACHED_SECONDS) {
+            return Text.of("Temps écoulé: " + seconds + " secondes");
+        }
+
+        Text text = timerTexts[seconds];
+        if (text == null) {
+            text = Text.of("Temps écoulé: " + seconds + " secondes");
+            timerTexts[seconds] = text;
+        }
+
+        return text;
+    }
+
+    private static class State {
+        private int wanted = HIDDEN;
+        private int displayed = HIDDEN;
+    }
+}
@@ -0,0 +1,305 @@
+package com.hardel.eventmod.event.parkour;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.hardel.eventmod.EventMod;
+import com.hardel.eventmod.event.EventData;
+import com.hardel.eventmod.event.PlayerDataWriter;
+import com.hardel.eventmod.utils.IndexedSkipList;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+
+/**
+ * Sorted ranking of the players of one parkour variant, maintained incrementally as players progress.
+ * Finished players come first, ordered by the metric of the win condition, then the players still running.
+ * The entries are persisted in {@code events/index/parkour/<variant>.json} by the background writer along with
+ * the journal sequence they cover, so the leaderboard is restored after a restart by reading only the players changed
+ * since, and rebuilt from every player when the index is missing or older than the journal.
+ * Loading runs off the server thread, the live updates received meanwhile win over the loaded entries.
+ */
+public class ParkourLeaderboard {
+    private static final Logger LOGGER = LogManager.getLogger(ParkourLeaderboard.class);
+    private static final Executor LOADER = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("EventMod Leaderboard Loader").factory());
+    private static final Map<String, ParkourLeaderboard> instances = new HashMap<>();
+    // Concurrent so the background writer can snapshot it while the server thread updates it
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private final String variant;
+    private WinCondition winCondition;
+    private IndexedSkipList<Entry> ranking;
+    private boolean loading;
+    // Players updated while loading, their live entry is newer than the loaded one
+    private final Set<UUID> touched = new HashSet<>();
+
+    private ParkourLeaderboard(String variant, WinCondition winCondition) {
+        this.variant = variant;
+        this.winCondition = winCondition;
+        this.ranking = new IndexedSkipList<>(comparator(winCondition));
+    }
+
+    /**
+     * Get the leaderboard of the variant
+     *
+     * @return the leaderboard, or null if it was not built yet
+     */
+    public static ParkourLeaderboard getInstance(String variant) {
+        return instances.get(variant);
+    }
+
+    /**
+     * Create an empty leaderboard for the variant, replacing the existing one
+     */
+    public static ParkourLeaderboard create(String variant, WinCondition winCondition) {
+        ParkourLeaderboard leaderboard = new ParkourLeaderboard(variant, winCondition);
+        instances.put(variant, leaderboard);
+        return leaderboard;
+    }
+
+    /**
+     * Create an empty leaderboard for a new variant, unless one already exists
+     */
+    public static void onAddVariant(String variant, WinCondition winCondition) {
+        if (!instances.containsKey(variant)) {
+            create(variant, winCondition);
+        }
+    }
+
+    /**
+     * Load the leaderboards of the variants not loaded yet off the server thread, then publish them through
+     * the server executor. The leaderboards are registered right away and receive the live updates while loading.
+     *
+     * @param variants       the win condition of every variant to load
+     * @param reader         reads the data of a player, must be safe to call off the server thread
+     * @param serverExecutor runs the publication on the server thread
+     */
+    public static void loadAll(Map<String, WinCondition> variants, Function<UUID, List<ParkourPlayerData>> reader, Executor serverExecutor) {
+        List<ParkourLeaderboard> leaderboards = new ArrayList<>();
+        for (Map.Entry<String, WinCondition> variant : variants.entrySet()) {
+            if (!instances.containsKey(variant.getKey())) {
+                ParkourLeaderboard leaderboard = create(variant.getKey(), variant.getValue());
+                leaderboard.loading = true;
+                leaderboards.add(leaderboard);
+            }
+        }
+
+        if (leaderboards.isEmpty()) {
+            return;
+        }
+
+        LOADER.execute(() -> {
+            Map<ParkourLeaderboard, Map<UUID, Entry>> loaded = new HashMap<>();
+            try {
+                loaded = read(leaderboards, reader);
+            } catch (RuntimeException e) {
+                LOGGER.error("Failed to load the parkour leaderboards", e);
+            }
+
+            Map<ParkourLeaderboard, Map<UUID, Entry>> result = loaded;
+            serverExecutor.execute(() -> leaderboards.forEach(leaderboard -> leaderboard.finishLoading(result.getOrDefault(leaderboard, Map.of()))));
+        });
+    }
+
+    /**
+     * Read the persisted index of every leaderboard, then the players changed since, or every player if one index
+     * must be rebuilt. The current data of a player is authoritative, so reading more players than needed is harmless.
+     */
+    private static Map<ParkourLeaderboard, Map<UUID, Entry>> read(List<ParkourLeaderboard> leaderboards, Function<UUID, List<ParkourPlayerData>> reader) {
+        Map<ParkourLeaderboard, Map<UUID, Entry>> loaded = new HashMap<>();
+        boolean rebuild = false;
+        for (ParkourLeaderboard leaderboard : leaderboards) {
+            Map<UUID, Entry> entries = new HashMap<>();
+            JsonArray data = EventData.loadIndexEventData(EventMod.ParkourKey, leaderboard.variant);
+            if (data == null) {
+                rebuild = true;
+            } else {
+                for (JsonElement element : data) {
+                    JsonArray entry = element.getAsJsonArray();
+                    UUID playerUuid = UUID.fromString(entry.get(0).getAsString());
+                    entries.put(playerUuid, new Entry(playerUuid, entry.get(3).getAsBoolean(), entry.get(1).getAsInt(), entry.get(2).getAsInt()));
+                }
+            }
+
+            loaded.put(leaderboard, entries);
+        }
+
+        List<UUID> players = rebuild ? EventData.forceLoadAllPlayerEventData(EventMod.ParkourKey) : EventData.getChangedPlayers(EventMod.ParkourKey);
+        for (UUID playerUuid : players) {
+            List<ParkourPlayerData> playerData = reader.apply(playerUuid);
+            for (Map.Entry<ParkourLeaderboard, Map<UUID, Entry>> leaderboard : loaded.entrySet()) {
+                leaderboard.getValue().remove(playerUuid);
+                for (ParkourPlayerData data : playerData) {
+                    if (leaderboard.getKey().variant.equals(data.variant())) {
+                        leaderboard.getValue().put(playerUuid, Entry.of(playerUuid, data));
+                    }
+                }
+            }
+        }
+
+        return loaded;
+    }
+
+    private void finishLoading(Map<UUID, Entry> loaded) {
+        if (instances.get(variant) != this) {
+            return;
+        }
+
+        for (Entry entry : loaded.values()) {
+            if (!touched.contains(entry.playerUuid())) {
+                put(entry);
+            }
+        }
+
+        touched.clear();
+        loading = false;
+        markDirty();
+    }
+
+    /**
+     * Update the player in the leaderboard of the variant, if it is already built
+     */
+    public static void onUpdate(String variant, UUID playerUuid, ParkourPlayerData data) {
+        ParkourLeaderboard leaderboard = instances.get(variant);
+        if (leaderboard != null) {
+            leaderboard.update(playerUuid, data);
+        }
+    }
+
+    /**
+     * Remove the player from the leaderboard of the variant, and if variant is null, from every leaderboard
+     */
+    public static void onReset(String variant, UUID playerUuid) {
+        if (variant == null) {
+            instances.values().forEach(leaderboard -> leaderboard.remove(playerUuid));
+            return;
+        }
+
+        ParkourLeaderboard leaderboard = instances.get(variant);
+        if (leaderboard != null) {
+            leaderboard.remove(playerUuid);
+        }
+    }
+
+    /**
+     * Remove the leaderboard of a deleted variant
+     */
+    public static void onRemoveVariant(String variant) {
+        instances.remove(variant);
+        EventData.deleteIndexEventData(EventMod.ParkourKey, variant);
+    }
+
+    public void update(UUID playerUuid, ParkourPlayerData data) {
+        if (loading) {
+            touched.add(playerUuid);
+        }
+
+        if (put(Entry.of(playerUuid, data))) {
+            markDirty();
+        }
+    }
+
+    public void remove(UUID playerUuid) {
+        if (loading) {
+            touched.add(playerUuid);
+        }
+
+        Entry previous = entries.remove(playerUuid);
+        if (previous != null) {
+            ranking.remove(previous);
+            markDirty();
+        }
+    }
+
+    /**
+     * Queue the leaderboard to be persisted by the background writer, once it is loaded
+     */
+    public void markDirty() {
+        if (!loading) {
+            PlayerDataWriter.markIndex(EventMod.ParkourKey, variant, this::toJson);
+        }
+    }
+
+    private boolean put(Entry entry) {
+        Entry previous = entries.put(entry.playerUuid(), entry);
+        if (previous != null) {
+            if (previous.equals(entry)) {
+                return false;
+            }
+
+            ranking.remove(previous);
+        }
+
+        ranking.add(entry);
+        return true;
+    }
+
+    private JsonArray toJson() {
+        JsonArray data = new JsonArray(entries.size());
+        for (Entry entry : entries.values()) {
+            JsonArray row = new JsonArray(4);
+            row.add(entry.playerUuid().toString());
+            row.add(entry.finishTicks());
+            row.add(entry.durationTicks());
+            row.add(entry.finished());
+            data.add(row);
+        }
+
+        return data;
+    }
+
+    /**
+     * Re-sort the leaderboard if the win condition of the variant changed
+     */
+    public void setWinCondition(WinCondition winCondition) {
+        if (this.winCondition == winCondition) {
+            return;
+        }
+
+        this.winCondition = winCondition;
+        this.ranking = new IndexedSkipList<>(comparator(winCondition));
+        entries.values().forEach(ranking::add);
+    }
+
+    /**
+     * Get the best players
+     *
+     * @param howMany the number of players to get
+     * @return the entries in ranking order
+     */
+    public List<Entry> top(int howMany) {
+        return ranking.head(howMany);
+    }
+
+    /**
+     * Get the one based rank of the player
+     *
+     * @return the rank, or -1 if the player has not played the variant
+     */
+    public int getRank(UUID playerUuid) {
+        Entry entry = entries.get(playerUuid);
+        return entry != null ? ranking.indexOf(entry) + 1 : -1;
+    }
+
+    private static Comparator<Entry> comparator(WinCondition winCondition) {
+        Comparator<Entry> metric = winCondition == WinCondition.FASTEST_TIME
+                ? Comparator.comparingInt(Entry::durationTicks)
+                : Comparator.comparingInt(Entry::finishTicks);
+
+        return Comparator.comparing(Entry::finished, Comparator.reverseOrder())
+                .thenComparing((entry1, entry2) -> entry1.finished() ? metric.compare(entry1, entry2) : 0)
+                .thenComparing(Entry::playerUuid);
+    }
+
+    public record Entry(UUID playerUuid, boolean finished, int finishTicks, int durationTicks) {
+        public static Entry of(UUID playerUuid, ParkourPlayerData data) {
+            boolean finished = Boolean.TRUE.equals(data.isFinished());
+            int startTicks = Objects.requireNonNullElse(data.startTicks(), 0);
+            int finishTicks = Objects.requireNonNullElse(data.finishTicks(), -1);
+            return new Entry(playerUuid, finished, finishTicks, finished ? finishTicks - startTicks : -1);
+        }
+    }
+}
@@ -5,11 +5,16 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.hardel.eventmod.EventMod;
 import com.hardel.eventmod.event.EventData;
+import com.hardel.eventmod.event.PlayerDataCache;
+import net.fabricmc.fabric.api.networking.v1.PacketSender;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayNetworkHandler;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.text.Text;
 import net.minecraft.util.math.BlockPos;
 
 import java.util.*;
+import java.util.concurrent.Executor;
 
 public record ParkourPlayerData(
         Integer checkpoints,
@@ -19,7 +24,7 @@ public record ParkourPlayerData(
         Integer finishTicks,
         Boolean isParticipating
 ) {
-    private static final Map<UUID, List<ParkourPlayerData>> instances = new HashMap<>();
+    private static final PlayerDataCache<List<ParkourPlayerData>> instances = new PlayerDataCache<>();
 
     public static ParkourPlayerData getInstance(UUID playerUuid, String variant) {
         return getInstances(playerUuid).stream()
@@ -29,19 +34,55 @@ public record ParkourPlayerData(
     }
 
     private static List<ParkourPlayerData> getInstances(UUID playerUuid) {
-        if (!instances.containsKey(playerUuid)) {
-            loadPlayerData(playerUuid);
+        List<ParkourPlayerData> instance = instances.get(playerUuid);
+        if (instance == null) {
+            instance = readPlayerData(playerUuid);
+            instances.put(playerUuid, instance);
         }
 
-        instances.computeIfAbsent(playerUuid, k -> new ArrayList<>());
-        return instances.get(playerUuid);
+        return instance;
+    }
+
+    /**
+     * Check if the data of the player is ready, the tick logic skips players still being preloaded
+     */
+    public static boolean isLoaded(UUID playerUuid) {
+        return !instances.isLoading(playerUuid);
+    }
+
+    public static PlayerDataCache<List<ParkourPlayerData>> getCache() {
+        return instances;
+    }
+
+    /**
+     * Pin the data of the player while it is online, and preload it off the server thread
+     */
+    public static void onJoin(ServerPlayNetworkHandler handler, PacketSender sender, MinecraftServer server) {
+        join(handler.getPlayer().getUuid(), server);
+    }
+
+    /**
+     * Pin the data of the player and preload it off the server thread
+     *
+     * @param serverExecutor runs the publication of the data on the server thread
+     */
+    public static void join(UUID playerUuid, Executor serverExecutor) {
+        instances.pin(playerUuid);
+        instances.preload(playerUuid, ParkourPlayerData::readPlayerData, serverExecutor);
+    }
+
+    /**
+     * Unload the data of the player, every change is already handed to the writer
+     */
+    public static void onDisconnect(ServerPlayNetworkHandler handler, MinecraftServer server) {
+        instances.unload(handler.getPlayer().getUuid());
     }
 
     public static Builder builder(String variant) {
         return new Builder(variant);
     }
 
-    private static void loadPlayerData(UUID playerUuid) {
+    private static List<ParkourPlayerData> readPlayerData(UUID playerUuid) {
         JsonArray loadedConfigs = EventData.loadPlayerEventData(playerUuid, EventMod.ParkourKey);
         List<ParkourPlayerData> data = new ArrayList<>();
 
@@ -57,11 +98,11 @@ public record ParkourPlayerData(
             data.add(new ParkourPlayerData(checkpoints, variant, isFinished, startTicks, finishTicks, isParticipating));
         }
 
-        instances.put(playerUuid, data);
+        return data;
     }
 
     private static void savePlayerData(UUID playerUuid) {
-        List<ParkourPlayerData> instance = instances.get(playerUuid);
+        List<ParkourPlayerData> instance = instances.peek(playerUuid);
         if (instance == null) {
             instance = new ArrayList<>();
         }
@@ -82,7 +123,7 @@ public record ParkourPlayerData(
             data.add(object);
         }
 
-        EventData.savePlayerEventData(playerUuid, EventMod.ParkourKey, data);
+        EventData.queuePlayerEventData(playerUuid, EventMod.ParkourKey, data);
     }
 
 
@@ -96,7 +137,7 @@ public record ParkourPlayerData(
         List<ParkourPlayerData> instance = getInstances(playerUuid);
         for (ParkourPlayerData data : instance) {
             if (data.variant.equals(variant)) {
-                return Text.of("Checkpoints: " + data.checkpoints + ", Finished: " + data.isFinished + ", Start: " + data.startTicks + ", Finish: " + data.finishTicks);
+                return Text.of("Checkpoints: " + data.checkpoints + ", Finished: " + data.isFinished + ", Start: " + data.startTicks + ", Finish: " + data.finishTicks + ", Rank: " + getRank(variant, playerUuid));
             }
         }
 
@@ -110,56 +151,63 @@ public record ParkourPlayerData(
      * @param howMany the number of players to get
      */
     public static List<UUID> getRanking(String variant, int howMany) {
-        // Dirty code, but it works
-        List<UUID> players = EventData.forceLoadAllPlayerEventData(EventMod.ParkourKey);
-        for (UUID playerUuid : players) {
-            getInstances(playerUuid);
+        List<UUID> ranking = new ArrayList<>();
+        for (ParkourLeaderboard.Entry entry : getRankingEntries(variant, howMany)) {
+            ranking.add(entry.playerUuid());
         }
 
-        List<UUID> ranking = new ArrayList<>();
+        return ranking;
+    }
 
-        // Get all players has played the variant, and sort by finish status
-        List<UUID> playerUuids = new ArrayList<>(instances.keySet());
-        playerUuids.removeIf(uuid -> getInstances(uuid).stream().noneMatch(data -> data.variant.equals(variant)));
-
-        // Check by finish status true, and the
-        // Get the config from the variant
-        ParkourConfigData config = ParkourConfigData.getInstance().stream().filter(c -> c.variant().equals(variant)).findFirst().orElse(null);
-        WinCondition winCondition = config != null ? config.winCondition() : WinCondition.FIRST_TO_FINISH;
-
-        // For FIRST_TO_FINISH is the player with status isFinished true and lower endTicks
-        // For FASTEST_TIME is the player with status isFinished true and lower time between startTicks and finishTicks
-        playerUuids.sort((uuid1, uuid2) -> {
-            int compare = 0;
-            List<ParkourPlayerData> instance1 = getInstances(uuid1);
-            List<ParkourPlayerData> instance2 = getInstances(uuid2);
-            ParkourPlayerData data1 = instance1.stream().filter(data -> data.variant.equals(variant)).findFirst().orElse(null);
-            ParkourPlayerData data2 = instance2.stream().filter(data -> data.variant.equals(variant)).findFirst().orElse(null);
-
-            if (data1 == null || data2 == null) {
-                return 0;
-            }
+    /**
+     * Get Ranking between all players, with the finish and duration ticks of each player
+     *
+     * @param variant the variant of the player
+     * @param howMany the number of players to get
+     */
+    public static List<ParkourLeaderboard.Entry> getRankingEntries(String variant, int howMany) {
+        ParkourLeaderboard leaderboard = getLeaderboard(variant);
+        return leaderboard != null ? leaderboard.top(howMany) : List.of();
+    }
 
-            if (winCondition == WinCondition.FIRST_TO_FINISH) {
-                compare = Boolean.compare(data1.isFinished, data2.isFinished);
-                if (compare == 0) {
-                    compare = Integer.compare(data1.finishTicks, data2.finishTicks);
-                }
-            } else if (winCondition == WinCondition.FASTEST_TIME) {
-                compare = Boolean.compare(data1.isFinished, data2.isFinished);
-                if (compare == 0) {
-                    compare = Integer.compare(data1.finishTicks - data1.startTicks, data2.finishTicks - data2.startTicks);
-                }
-            }
+    /**
+     * Load the leaderboard of every configured variant off the server thread, called when the configs are loaded
+     *
+     * @param serverExecutor runs the publication of the leaderboards on the server thread
+     */
+    public static void loadLeaderboards(Executor serverExecutor) {
+        Map<String, WinCondition> variants = new HashMap<>();
+        for (ParkourConfigData config : ParkourConfigData.getInstance()) {
+            variants.put(config.variant(), config.winCondition());
+        }
 
-            return compare;
-        });
+        ParkourLeaderboard.loadAll(variants, ParkourPlayerData::readPlayerData, serverExecutor);
+    }
 
-        for (int i = 0; i < howMany && i < playerUuids.size(); i++) {
-            ranking.add(playerUuids.get(i));
+    /**
+     * Get the rank of the player for the variant
+     *
+     * @return the one based rank, or -1 if the player has not played the variant
+     */
+    public static int getRank(String variant, UUID playerUuid) {
+        ParkourLeaderboard leaderboard = getLeaderboard(variant);
+        return leaderboard != null ? leaderboard.getRank(playerUuid) : -1;
+    }
+
+    /**
+     * Get the leaderboard of the variant, loaded by {@link #loadLeaderboards} then kept up to date
+     * by {@link #updatePlayer} and {@link #resetByVariant}
+     *
+     * @return the leaderboard, or null if the variant is not configured or not loaded yet
+     */
+    private static ParkourLeaderboard getLeaderboard(String variant) {
+        ParkourLeaderboard leaderboard = ParkourLeaderboard.getInstance(variant);
+        ParkourConfigData config = ParkourConfigData.getByVariant(variant);
+        if (leaderboard != null && config != null) {
+            leaderboard.setWinCondition(config.winCondition());
         }
 
-        return ranking;
+        return leaderboard;
     }
 
     /**
@@ -168,10 +216,10 @@ public record ParkourPlayerData(
      * @param variant the variant to reset
      */
     public static void resetByVariant(String variant, UUID playerUuid) {
-        List<ParkourPlayerData> instance = instances.computeIfAbsent(playerUuid, k -> new ArrayList<>());
+        List<ParkourPlayerData> instance = getInstances(playerUuid);
         instance.removeIf(data -> variant == null || Objects.equals(data.variant, variant));
 
-        instances.put(playerUuid, instance);
+        ParkourLeaderboard.onReset(variant, playerUuid);
         savePlayerData(playerUuid);
     }
 
@@ -183,7 +231,7 @@ public record ParkourPlayerData(
         instance.removeIf(data -> data.variant.equals(variant));
         instance.add(updatedData);
 
-        instances.put(playerUuid, instance);
+        ParkourLeaderboard.onUpdate(variant, playerUuid, updatedData);
         savePlayerData(playerUuid);
     }
 
@@ -200,21 +248,13 @@ public record ParkourPlayerData(
         }
 
         // Get the nearest index of the checkpoints
-        Optional<Integer> nearestIndex = ParkourConfigData.getInstance().stream()
-                .filter(c -> c.variant().equals(variant))
-                .findFirst()
-                .map(ParkourConfigData::checkpoints)
-                .orElse(new ArrayList<>())
-                .stream()
-                .map(CheckpointData::index)
-                .filter(index -> index > instance.checkpoints())
-                .min(Comparator.naturalOrder());
-
-        if (nearestIndex.isEmpty()) {
+        CheckpointOrder order = ParkourConfigData.getCheckpointOrder(variant);
+        int nearestIndex = order != null ? order.next(instance.checkpoints()) : CheckpointOrder.NONE;
+        if (nearestIndex == CheckpointOrder.NONE) {
             return CheckpointAction.SAME;
         }
 
-        if (checkpoints == nearestIndex.get()) {
+        if (checkpoints == nearestIndex) {
             updatePlayer(variant, playerUuid, builder(variant).from(instance).checkpoints(checkpoints).build());
             return CheckpointAction.GOOD_PATH;
         }
@@ -232,19 +272,12 @@ public record ParkourPlayerData(
      */
     public static BlockPos teleportLastCheckpoint(String variant, ServerPlayerEntity player) {
         int currentPlayerCheckpoint = getInstance(player.getUuid(), variant).checkpoints();
-        List<ParkourConfigData> configs = ParkourConfigData.getInstance();
-
-        for (ParkourConfigData config : configs) {
-            for (CheckpointData checkpoint : config.checkpoints()) {
-                EventMod.LOGGER.info("Checkpoint: {}", checkpoint);
-                if (config.variant().equals(variant)) {
-                    EventMod.LOGGER.info("Last checkpoint: {}", checkpoint);
-                    if (currentPlayerCheckpoint == checkpoint.index()) {
-                        EventMod.LOGGER.info("Teleporting player to last checkpoint");
-                        return checkpoint.respawn();
-                    }
-                }
-            }
+        CheckpointOrder order = ParkourConfigData.getCheckpointOrder(variant);
+        BlockPos respawn = order != null ? order.respawn(currentPlayerCheckpoint) : null;
+
+        if (respawn != null) {
+            EventMod.LOGGER.info("Teleporting player to last checkpoint");
+            return respawn;
         }
 
         EventMod.LOGGER.info("Player has not taken the last checkpoint");
@@ -291,30 +324,17 @@ public record ParkourPlayerData(
     /**
      * Finish the player with the variant, check if not already finished
      *
-     * @param variant the variant of the player
-     * @param player  the player's UUID
-     * @param ticks   the finish ticks
+     * @param variant    the variant of the player
+     * @param playerUuid the player's UUID
+     * @param ticks      the finish ticks
      * @return Finish the parkour
      */
-    public static CheckpointAction finishCheckpoint(String variant, ServerPlayerEntity player, int ticks, int checkpoint) {
-        ParkourPlayerData instance = getInstance(player.getUuid(), variant);
-
-        boolean hasTakenPenultimateCheckpoint = false;
-        List<ParkourConfigData> configs = ParkourConfigData.getInstance();
-
-        for (ParkourConfigData config : configs) {
-            if (config.variant().equals(variant)) {
-                List<CheckpointData> checkpoints = new ArrayList<>(config.checkpoints());
-                checkpoints.sort(Comparator.comparingInt(CheckpointData::index));
-                if (checkpoints.size() >= 2) {
-                    int penultimateIndex = checkpoints.get(checkpoints.size() - 2).index();
-                    if (instance.checkpoints != null && penultimateIndex == instance.checkpoints) {
-                        hasTakenPenultimateCheckpoint = true;
-                        break;
-                    }
-                }
-            }
-        }
+    public static CheckpointAction finishCheckpoint(String variant, UUID playerUuid, int ticks, int checkpoint) {
+        ParkourPlayerData instance = getInstance(playerUuid, variant);
+
+        CheckpointOrder order = ParkourConfigData.getCheckpointOrder(variant);
+        int penultimateIndex = order != null ? order.penultimate() : CheckpointOrder.NONE;
+        boolean hasTakenPenultimateCheckpoint = penultimateIndex != CheckpointOrder.NONE && instance.checkpoints != null && penultimateIndex == instance.checkpoints;
 
         if (instance.checkpoints == null || instance.isFinished) {
             return CheckpointAction.SAME;
@@ -324,9 +344,7 @@ public record ParkourPlayerData(
             return CheckpointAction.NOT_GOOD_PATH;
         }
 
-        int second = (ticks - instance.startTicks()) / 20;
-        player.sendMessage(Text.of("You have finished the parkour, with a time of " + second + " seconds"), false);
-        updatePlayer(variant, player.getUuid(), builder(variant).from(instance).isFinished(true).checkpoints(checkpoint).finishTicks(ticks).build());
+        updatePlayer(variant, playerUuid, builder(variant).from(instance).isFinished(true).checkpoints(checkpoint).finishTicks(ticks).build());
         return CheckpointAction.GOOD_PATH;
     }
 
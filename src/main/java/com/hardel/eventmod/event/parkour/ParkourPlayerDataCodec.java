@@ -0,0 +1,119 @@
+package com.hardel.eventmod.event.parkour;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.hardel.eventmod.event.PlayerDataCodec;
+import io.netty.buffer.Unpooled;
+import net.minecraft.network.PacketByteBuf;
+
+/**
+ * Binary codec of the parkour player data.
+ * Each entry is the variant, a flag byte telling which values are present, then the present ticks as zigzag varints.
+ */
+public class ParkourPlayerDataCodec implements PlayerDataCodec {
+    public static final byte ID = 1;
+    private static final byte VERSION = 1;
+    private static final int HAS_FINISHED = 1;
+    private static final int FINISHED = 1 << 1;
+    private static final int HAS_PARTICIPATING = 1 << 2;
+    private static final int PARTICIPATING = 1 << 3;
+    private static final int HAS_CHECKPOINTS = 1 << 4;
+    private static final int HAS_START_TICKS = 1 << 5;
+    private static final int HAS_FINISH_TICKS = 1 << 6;
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public byte[] encode(JsonArray data) {
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.buffer(1 + data.size() * 16));
+        buf.writeByte(VERSION);
+        buf.writeVarInt(data.size());
+
+        for (JsonElement element : data) {
+            JsonObject entry = element.getAsJsonObject();
+            JsonElement isFinished = entry.get("isFinished");
+            JsonElement isParticipating = entry.get("isParticipating");
+            JsonElement checkpoints = entry.get("checkpoints");
+            JsonElement startTicks = entry.get("startTicks");
+            JsonElement finishTicks = entry.get("finishTicks");
+
+            int flags = 0;
+            if (isPresent(isFinished)) {
+                flags |= HAS_FINISHED | (isFinished.getAsBoolean() ? FINISHED : 0);
+            }
+            if (isPresent(isParticipating)) {
+                flags |= HAS_PARTICIPATING | (isParticipating.getAsBoolean() ? PARTICIPATING : 0);
+            }
+            if (isPresent(checkpoints)) {
+                flags |= HAS_CHECKPOINTS;
+            }
+            if (isPresent(startTicks)) {
+                flags |= HAS_START_TICKS;
+            }
+            if (isPresent(finishTicks)) {
+                flags |= HAS_FINISH_TICKS;
+            }
+
+            buf.writeString(entry.get("variant").getAsString());
+            buf.writeByte(flags);
+            if ((flags & HAS_CHECKPOINTS) != 0) {
+                buf.writeVarInt(zigzag(checkpoints.getAsInt()));
+            }
+            if ((flags & HAS_START_TICKS) != 0) {
+                buf.writeVarInt(zigzag(startTicks.getAsInt()));
+            }
+            if ((flags & HAS_FINISH_TICKS) != 0) {
+                buf.writeVarInt(zigzag(finishTicks.getAsInt()));
+            }
+        }
+
+        byte[] bytes = new byte[buf.readableBytes()];
+        buf.readBytes(bytes);
+        return bytes;
+    }
+
+    @Override
+    public JsonArray decode(byte[] payload) {
+        PacketByteBuf buf = new PacketByteBuf(Unpooled.wrappedBuffer(payload));
+        byte version = buf.readByte();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported parkour player data version: " + version);
+        }
+
+        int size = buf.readVarInt();
+        JsonArray data = new JsonArray(size);
+        for (int i = 0; i < size; i++) {
+            String variant = buf.readString();
+            int flags = buf.readUnsignedByte();
+
+            JsonObject entry = new JsonObject();
+            entry.addProperty("variant", variant);
+            entry.add("checkpoints", (flags & HAS_CHECKPOINTS) != 0 ? new JsonPrimitive(unzigzag(buf.readVarInt())) : JsonNull.INSTANCE);
+            entry.add("isFinished", (flags & HAS_FINISHED) != 0 ? new JsonPrimitive((flags & FINISHED) != 0) : JsonNull.INSTANCE);
+            entry.add("startTicks", (flags & HAS_START_TICKS) != 0 ? new JsonPrimitive(unzigzag(buf.readVarInt())) : JsonNull.INSTANCE);
+            entry.add("finishTicks", (flags & HAS_FINISH_TICKS) != 0 ? new JsonPrimitive(unzigzag(buf.readVarInt())) : JsonNull.INSTANCE);
+            entry.add("isParticipating", (flags & HAS_PARTICIPATING) != 0 ? new JsonPrimitive((flags & PARTICIPATING) != 0) : JsonNull.INSTANCE);
+            data.add(entry);
+        }
+
+        return data;
+    }
+
+    private static boolean isPresent(JsonElement element) {
+        return element != null && !element.isJsonNull();
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
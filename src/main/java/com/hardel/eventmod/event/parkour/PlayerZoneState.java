@@ -0,0 +1,84 @@
+package com.hardel.eventmod.event.parkour;
+
+import com.hardel.eventmod.utils.BlockUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cached zone membership of a single player, keyed by the last evaluated block position.
+ * Zones are only re-evaluated when the player changes block or when the configs are rebuilt.
+ */
+public class PlayerZoneState {
+    private long lastPos;
+    private CheckpointIndex lastIndex;
+    private List<CheckpointIndex.Zone> zones = List.of();
+    private List<ParkourConfigData> courses = List.of();
+
+    /**
+     * Check if the membership has to be re-evaluated
+     *
+     * @param pos   the packed block position of the player
+     * @param index the current checkpoint index
+     * @return true if the player changed block or the configs were rebuilt since the last evaluation
+     */
+    public boolean isOutdated(long pos, CheckpointIndex index) {
+        return lastIndex != index || lastPos != pos;
+    }
+
+    /**
+     * Re-evaluate the membership for the new position, checkpoints untouched by a config rebuild keep their identity
+     * so a player standing still inside one is not triggered again
+     *
+     * @return the checkpoint zones the player just entered
+     */
+    public List<CheckpointIndex.Zone> update(long pos, CheckpointIndex index, List<ParkourConfigData> configs, int x, int y, int z) {
+        List<CheckpointIndex.Zone> current = new ArrayList<>(2);
+        List<CheckpointIndex.Zone> entered = new ArrayList<>(1);
+
+        for (CheckpointIndex.Zone zone : index.query(x, y, z)) {
+            if (zone.contains(x, y, z)) {
+                current.add(zone);
+                if (!containsCheckpoint(zones, zone.checkpoint())) {
+                    entered.add(zone);
+                }
+            }
+        }
+
+        List<ParkourConfigData> currentCourses = new ArrayList<>(1);
+        for (ParkourConfigData config : configs) {
+            if (BlockUtils.isInZone(x, y, z, config.start(), config.end())) {
+                currentCourses.add(config);
+            }
+        }
+
+        this.lastPos = pos;
+        this.lastIndex = index;
+        this.zones = current;
+        this.courses = currentCourses;
+        return entered;
+    }
+
+    /**
+     * Check if the player was inside the course area at the last evaluation
+     */
+    public boolean isInCourse(ParkourConfigData config) {
+        for (ParkourConfigData course : courses) {
+            if (course == config) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static boolean containsCheckpoint(List<CheckpointIndex.Zone> zones, CheckpointData checkpoint) {
+        for (CheckpointIndex.Zone zone : zones) {
+            if (zone.checkpoint() == checkpoint) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+}
@@ -1,30 +1,40 @@
 package com.hardel.eventmod.utils;
 
 import com.google.gson.JsonArray;
-import net.minecraft.nbt.NbtCompound;
+import net.minecraft.block.entity.SkullBlockEntity;
+import net.minecraft.component.type.ProfileComponent;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
 
-import java.util.Objects;
 import java.util.UUID;
 
 public class BlockUtils {
+    /**
+     * Get the owner of the player head at the position, read from its profile component
+     *
+     * @return the owner, or null if there is no player head or its profile has no id
+     */
     public static UUID getHeadUuid(World world, BlockPos blockPos) {
-        NbtCompound nbt = Objects.requireNonNull(world.getBlockEntity(blockPos)).createComponentlessNbt(null);
-        NbtCompound profile = nbt.getCompound("profile");
-        int[] uuid = profile.getIntArray("id");
-        return new UUID(((long) uuid[0] << 32) | uuid[1], ((long) uuid[2] << 32) | uuid[3]);
+        if (!(world.getBlockEntity(blockPos) instanceof SkullBlockEntity skull)) {
+            return null;
+        }
+
+        ProfileComponent owner = skull.getOwner();
+        return owner != null ? owner.id().orElse(null) : null;
     }
 
     public static boolean isPlayerInZone(ServerPlayerEntity player, BlockPos pos1, BlockPos pos2) {
         int playerX = toBlockCoord(player.getX());
         int playerY = toBlockCoord(player.getY());
         int playerZ = toBlockCoord(player.getZ());
+        return isInZone(playerX, playerY, playerZ, pos1, pos2);
+    }
 
-        boolean isInX = isBetween(playerX, pos1.getX(), pos2.getX());
-        boolean isInY = isBetween(playerY, pos1.getY(), pos2.getY());
-        boolean isInZ = isBetween(playerZ, pos1.getZ(), pos2.getZ());
+    public static boolean isInZone(int x, int y, int z, BlockPos pos1, BlockPos pos2) {
+        boolean isInX = isBetween(x, pos1.getX(), pos2.getX());
+        boolean isInY = isBetween(y, pos1.getY(), pos2.getY());
+        boolean isInZ = isBetween(z, pos1.getZ(), pos2.getZ());
         return isInX && isInY && isInZ;
     }
 
@@ -32,7 +42,7 @@ public class BlockUtils {
         return value >= Math.min(min, max) && value <= Math.max(min, max);
     }
 
-    private static int toBlockCoord(double coordinate) {
+    public static int toBlockCoord(double coordinate) {
         return coordinate < 0 ? (int) coordinate - 1 : (int) coordinate;
     }
 
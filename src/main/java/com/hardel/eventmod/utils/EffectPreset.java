@@ -0,0 +1,32 @@
+package com.hardel.eventmod.utils;
+
+import net.minecraft.particle.SimpleParticleType;
+import net.minecraft.registry.Registries;
+import net.minecraft.registry.entry.RegistryEntry;
+import net.minecraft.sound.SoundEvent;
+import net.minecraft.text.Text;
+import net.minecraft.util.Identifier;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Feedback of a checkpoint or a finder head compiled once when its config is loaded,
+ * so firing it reuses the resolved sound entry and the message instead of resolving them again.
+ */
+public record EffectPreset(Text message, RegistryEntry<SoundEvent> sound, SimpleParticleType particle) {
+    private static final Map<Identifier, RegistryEntry<SoundEvent>> sounds = new ConcurrentHashMap<>();
+
+    public static EffectPreset of(Text message, Identifier soundId, SimpleParticleType particle) {
+        return new EffectPreset(message, resolveSound(soundId), particle);
+    }
+
+    /**
+     * Get the registered sound entry, or a direct entry for a sound only known by the resource packs
+     */
+    public static RegistryEntry<SoundEvent> resolveSound(Identifier soundId) {
+        return sounds.computeIfAbsent(soundId, id -> Registries.SOUND_EVENT.getEntry(id)
+                .<RegistryEntry<SoundEvent>>map(entry -> entry)
+                .orElseGet(() -> RegistryEntry.of(SoundEvent.of(id))));
+    }
+}
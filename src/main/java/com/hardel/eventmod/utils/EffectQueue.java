@@ -0,0 +1,157 @@
+package com.hardel.eventmod.utils;
+
+import net.minecraft.network.listener.ClientPlayPacketListener;
+import net.minecraft.network.message.ChatVisibility;
+import net.minecraft.network.packet.Packet;
+import net.minecraft.network.packet.s2c.play.BundleS2CPacket;
+import net.minecraft.network.packet.s2c.play.GameMessageS2CPacket;
+import net.minecraft.network.packet.s2c.play.ParticleS2CPacket;
+import net.minecraft.network.packet.s2c.play.PlaySoundS2CPacket;
+import net.minecraft.particle.SimpleParticleType;
+import net.minecraft.registry.entry.RegistryEntry;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.sound.SoundCategory;
+import net.minecraft.sound.SoundEvent;
+import net.minecraft.text.Text;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.*;
+
+/**
+ * Feedback sent to the players during a tick, collected per player and flushed at the end of the tick,
+ * as a single bundle packet when a player has several effects. Identical effects of a tick are sent once,
+ * and only the last action bar message of a tick is kept since it would replace the previous ones anyway.
+ */
+public class EffectQueue {
+    private static final Map<UUID, Batch> batches = new LinkedHashMap<>();
+
+    public static void sendMessage(ServerPlayerEntity player, Text message, boolean overlay) {
+        Batch batch = getBatch(player);
+        if (overlay) {
+            batch.overlay = new Message(message, true);
+        } else {
+            batch.effects.add(new Message(message, false));
+        }
+    }
+
+    /**
+     * Show a low priority action bar message, dropped if another action bar message is already queued for the tick
+     *
+     * @return true if the message was queued
+     */
+    public static boolean sendStatus(ServerPlayerEntity player, Text message) {
+        Batch batch = getBatch(player);
+        if (batch.overlay != null) {
+            return false;
+        }
+
+        batch.overlay = new Message(message, true);
+        return true;
+    }
+
+    /**
+     * Fire a preset, the message on the action bar, the sound at the player and the particles at the position
+     */
+    public static void play(ServerPlayerEntity player, EffectPreset preset, BlockPos particlePos) {
+        Batch batch = getBatch(player);
+        batch.overlay = new Message(preset.message(), true);
+        batch.effects.add(new Sound(preset.sound(), player.getX(), player.getY(), player.getZ(), 1, 1));
+        batch.effects.add(new Particle(preset.particle(), particlePos.toImmutable()));
+    }
+
+    public static void playSound(ServerPlayerEntity player, RegistryEntry<SoundEvent> sound, float volume, float pitch) {
+        getBatch(player).effects.add(new Sound(sound, player.getX(), player.getY(), player.getZ(), volume, pitch));
+    }
+
+    public static void spawnParticles(ServerPlayerEntity player, BlockPos pos, SimpleParticleType particle) {
+        getBatch(player).effects.add(new Particle(particle, pos.toImmutable()));
+    }
+
+    /**
+     * Send the effects collected during the tick, called at the end of every tick
+     */
+    public static void flush(MinecraftServer server) {
+        for (Batch batch : batches.values()) {
+            ServerPlayerEntity player = batch.player;
+            if (player.isDisconnected()) {
+                continue;
+            }
+
+            List<Packet<? super ClientPlayPacketListener>> packets = new ArrayList<>(batch.effects.size() + 1);
+            for (Effect effect : batch.effects) {
+                if (effect.accepts(player)) {
+                    packets.add(effect.toPacket());
+                }
+            }
+
+            if (batch.overlay != null) {
+                packets.add(batch.overlay.toPacket());
+            }
+
+            if (packets.size() == 1) {
+                player.networkHandler.sendPacket(packets.getFirst());
+            } else if (!packets.isEmpty()) {
+                player.networkHandler.sendPacket(new BundleS2CPacket(packets));
+            }
+        }
+
+        batches.clear();
+    }
+
+    private static Batch getBatch(ServerPlayerEntity player) {
+        Batch batch = batches.get(player.getUuid());
+        if (batch == null || batch.player != player) {
+            // A player respawning during the tick gets a new entity, the effects follow the current one
+            batch = new Batch(player);
+            batches.put(player.getUuid(), batch);
+        }
+
+        return batch;
+    }
+
+    private static class Batch {
+        private final ServerPlayerEntity player;
+        private final Set<Effect> effects = new LinkedHashSet<>();
+        private Message overlay;
+
+        private Batch(ServerPlayerEntity player) {
+            this.player = player;
+        }
+    }
+
+    private interface Effect {
+        Packet<? super ClientPlayPacketListener> toPacket();
+
+        default boolean accepts(ServerPlayerEntity player) {
+            return true;
+        }
+    }
+
+    private record Message(Text message, boolean overlay) implements Effect {
+        @Override
+        public Packet<? super ClientPlayPacketListener> toPacket() {
+            return new GameMessageS2CPacket(message, overlay);
+        }
+
+        @Override
+        public boolean accepts(ServerPlayerEntity player) {
+            // Same rule as ServerPlayerEntity#sendMessage, hidden chat still shows the action bar
+            return overlay || player.getClientChatVisibility() != ChatVisibility.HIDDEN;
+        }
+    }
+
+    private record Sound(RegistryEntry<SoundEvent> sound, double x, double y, double z, float volume, float pitch) implements Effect {
+        @Override
+        public Packet<? super ClientPlayPacketListener> toPacket() {
+            return new PlaySoundS2CPacket(sound, SoundCategory.MASTER, x, y, z, volume, pitch, 0);
+        }
+    }
+
+    private record Particle(SimpleParticleType particle, BlockPos pos) implements Effect {
+        @Override
+        public Packet<? super ClientPlayPacketListener> toPacket() {
+            return new ParticleS2CPacket(particle, true, pos.getX(), pos.getY(), pos.getZ(), 0.75f, 0.75f, 0.75f, 0.25f, 100);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.hardel.eventmod.utils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Sorted skip list where every link stores how many elements it skips, so the rank of an element
+ * is found in O(log n). The comparator must be a total order.
+ */
+public class IndexedSkipList<T> {
+    private static final int MAX_LEVEL = 32;
+    private final Comparator<? super T> comparator;
+    private final Node<T> head = new Node<>(null, MAX_LEVEL);
+    private final SplittableRandom random = new SplittableRandom();
+    private int level = 1;
+    private int size;
+
+    public IndexedSkipList(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    public void add(T value) {
+        @SuppressWarnings("unchecked")
+        Node<T>[] update = new Node[MAX_LEVEL];
+        int[] rank = new int[MAX_LEVEL];
+        Node<T> node = head;
+
+        for (int i = level - 1; i >= 0; i--) {
+            rank[i] = i == level - 1 ? 0 : rank[i + 1];
+            while (node.next[i] != null && comparator.compare(node.next[i].value, value) < 0) {
+                rank[i] += node.span[i];
+                node = node.next[i];
+            }
+
+            update[i] = node;
+        }
+
+        int newLevel = randomLevel();
+        if (newLevel > level) {
+            for (int i = level; i < newLevel; i++) {
+                rank[i] = 0;
+                update[i] = head;
+                head.span[i] = size;
+            }
+
+            level = newLevel;
+        }
+
+        Node<T> inserted = new Node<>(value, newLevel);
+        for (int i = 0; i < newLevel; i++) {
+            inserted.next[i] = update[i].next[i];
+            update[i].next[i] = inserted;
+            inserted.span[i] = update[i].span[i] - (rank[0] - rank[i]);
+            update[i].span[i] = (rank[0] - rank[i]) + 1;
+        }
+
+        for (int i = newLevel; i < level; i++) {
+            update[i].span[i]++;
+        }
+
+        size++;
+    }
+
+    /**
+     * Remove the element comparing equal to the value
+     *
+     * @return true if an element was removed
+     */
+    public boolean remove(T value) {
+        @SuppressWarnings("unchecked")
+        Node<T>[] update = new Node[MAX_LEVEL];
+        Node<T> node = head;
+
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && comparator.compare(node.next[i].value, value) < 0) {
+                node = node.next[i];
+            }
+
+            update[i] = node;
+        }
+
+        Node<T> removed = node.next[0];
+        if (removed == null || comparator.compare(removed.value, value) != 0) {
+            return false;
+        }
+
+        for (int i = 0; i < level; i++) {
+            if (update[i].next[i] == removed) {
+                update[i].span[i] += removed.span[i] - 1;
+                update[i].next[i] = removed.next[i];
+            } else {
+                update[i].span[i]--;
+            }
+        }
+
+        while (level > 1 && head.next[level - 1] == null) {
+            level--;
+        }
+
+        size--;
+        return true;
+    }
+
+    /**
+     * Get the zero based rank of the element comparing equal to the value
+     *
+     * @return the rank, or -1 if the value is not in the list
+     */
+    public int indexOf(T value) {
+        int rank = 0;
+        Node<T> node = head;
+
+        for (int i = level - 1; i >= 0; i--) {
+            while (node.next[i] != null && comparator.compare(node.next[i].value, value) <= 0) {
+                rank += node.span[i];
+                node = node.next[i];
+            }
+
+            if (node != head && comparator.compare(node.value, value) == 0) {
+                return rank - 1;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Get the first elements in order
+     *
+     * @param count the maximum number of elements
+     * @return the first elements
+     */
+    public List<T> head(int count) {
+        List<T> values = new ArrayList<>(Math.max(0, Math.min(count, size)));
+        for (Node<T> node = head.next[0]; node != null && values.size() < count; node = node.next[0]) {
+            values.add(node.value);
+        }
+
+        return values;
+    }
+
+    private int randomLevel() {
+        int newLevel = 1;
+        while (newLevel < MAX_LEVEL && random.nextInt(4) == 0) {
+            newLevel++;
+        }
+
+        return newLevel;
+    }
+
+    private static final class Node<T> {
+        private final T value;
+        private final Node<T>[] next;
+        private final int[] span;
+
+        @SuppressWarnings("unchecked")
+        private Node(T value, int level) {
+            this.value = value;
+            this.next = new Node[level];
+            this.span = new int[level];
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.hardel.eventmod.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+
+/**
+ * Lock free log linear histogram of durations in nanoseconds, in the spirit of HdrHistogram.
+ * Values under 64 are counted exactly, larger values fall in 32 buckets per power of two,
+ * so a reported percentile is within about 3% of the recorded value. Safe to record from any thread.
+ */
+public class LatencyHistogram {
+    private static final int PRECISION_BITS = 6;
+    private static final int HALF_BUCKETS = 1 << (PRECISION_BITS - 1);
+    private final AtomicLongArray counts = new AtomicLongArray((64 - PRECISION_BITS + 2) * HALF_BUCKETS);
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(index(value));
+        max.accumulate(value);
+    }
+
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+
+        max.reset();
+    }
+
+    /**
+     * Copy the counts, so the percentiles of a report all come from the same state
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[counts.length()];
+        long count = 0;
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+
+        return new Snapshot(copy, count, max.get());
+    }
+
+    private static int index(long value) {
+        int exponent = Math.max(0, 64 - Long.numberOfLeadingZeros(value) - PRECISION_BITS);
+        return exponent * HALF_BUCKETS + (int) (value >>> exponent);
+    }
+
+    /**
+     * Get the highest value counted in the bucket
+     */
+    private static long highestValue(int index) {
+        if (index < 2 * HALF_BUCKETS) {
+            return index;
+        }
+
+        int exponent = index / HALF_BUCKETS - 1;
+        long mantissa = index - (long) exponent * HALF_BUCKETS;
+        return ((mantissa + 1) << exponent) - 1;
+    }
+
+    public record Snapshot(long[] counts, long count, long max) {
+        /**
+         * Get the value under which the given fraction of the recorded values fall
+         *
+         * @param percentile between 0 and 1
+         * @return the value in nanoseconds, or 0 if nothing was recorded
+         */
+        public long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(percentile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValue(i), max);
+                }
+            }
+
+            return max;
+        }
+    }
+}
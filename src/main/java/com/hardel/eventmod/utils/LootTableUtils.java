@@ -6,22 +6,112 @@ import net.minecraft.loot.LootTable;
 import net.minecraft.loot.context.LootContextParameterSet;
 import net.minecraft.loot.context.LootContextTypes;
 import net.minecraft.registry.RegistryKeys;
+import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.world.ServerWorld;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.ItemScatterer;
 import net.minecraft.util.collection.DefaultedList;
 import net.minecraft.util.math.BlockPos;
-import net.minecraft.util.math.Vec3d;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
-import java.util.Objects;
+import java.util.*;
 
+/**
+ * Resolved loot tables of the rewards, only accessed from the server thread.
+ * The tables are cached per reward until the next datapack reload, and queued rewards are spawned
+ * at most {@code eventmod.reward_budget} per tick, so a burst of finds is spread over the following ticks.
+ */
 public class LootTableUtils {
-    public static void spawnLootTable(PlayerEntity player, Identifier lootTableId) {
-        LootTable lootTable = Objects.requireNonNull(player.getServer()).getReloadableRegistries().getRegistryManager().get(RegistryKeys.LOOT_TABLE).get(lootTableId);
+    private static final Logger LOGGER = LogManager.getLogger(LootTableUtils.class);
+    private static final int REWARD_BUDGET = Integer.getInteger("eventmod.reward_budget", 32);
+    // Empty when the reward does not name a loot table, so a missing table is only resolved and reported once
+    private static final Map<String, Optional<LootTable>> tables = new HashMap<>();
+    private static final Map<ServerWorld, LootContextParameterSet> parameters = new IdentityHashMap<>();
+    private static final Deque<Reward> pending = new ArrayDeque<>();
+
+    /**
+     * Queue the reward to be spawned above the player during one of the next ticks
+     */
+    public static void queueReward(PlayerEntity player, String reward) {
+        if (player.getWorld() instanceof ServerWorld world) {
+            pending.add(new Reward(world, player.getBlockPos().up(), reward));
+        }
+    }
+
+    /**
+     * Spawn the queued rewards within the budget of the tick, called at the end of every server tick
+     */
+    public static void flush(MinecraftServer server) {
+        for (int i = 0; i < REWARD_BUDGET && !pending.isEmpty(); i++) {
+            Reward reward = pending.poll();
+            spawn(reward.world(), reward.pos(), reward.reward());
+        }
+    }
+
+    /**
+     * Spawn every queued reward, called when the server is stopping while the worlds are still loaded,
+     * so no reward is lost
+     */
+    public static void drain(MinecraftServer server) {
+        Reward reward;
+        while ((reward = pending.poll()) != null) {
+            spawn(reward.world(), reward.pos(), reward.reward());
+        }
+    }
+
+    /**
+     * Check if the reward names a loot table of the loaded datapacks
+     */
+    public static boolean isValidReward(MinecraftServer server, String reward) {
+        return getLootTable(server, reward) != null;
+    }
+
+    /**
+     * Get the loot table of the reward
+     *
+     * @return the loot table, or null if the reward is not a valid identifier or the table does not exist
+     */
+    public static LootTable getLootTable(MinecraftServer server, String reward) {
+        return tables.computeIfAbsent(reward, key -> {
+            Identifier lootTableId = Identifier.tryParse(key);
+            LootTable lootTable = lootTableId != null ? server.getReloadableRegistries().getRegistryManager().get(RegistryKeys.LOOT_TABLE).get(lootTableId) : null;
+            if (lootTable == null) {
+                LOGGER.warn("Unknown reward loot table: {}", key);
+            }
+
+            return Optional.ofNullable(lootTable);
+        }).orElse(null);
+    }
+
+    /**
+     * Drop the resolved loot tables, called when the datapacks are reloaded
+     */
+    public static void invalidate() {
+        tables.clear();
+        parameters.clear();
+    }
+
+    /**
+     * Drop the cache and the rewards queued after the drain, called when the server stops
+     */
+    public static void clear() {
+        invalidate();
+        pending.clear();
+    }
+
+    private static void spawn(ServerWorld world, BlockPos pos, String reward) {
+        LootTable lootTable = getLootTable(world.getServer(), reward);
+        if (lootTable == null) {
+            return;
+        }
+
         DefaultedList<ItemStack> lootStack = DefaultedList.of();
+        LootContextParameterSet parameterSet = parameters.computeIfAbsent(world, key -> new LootContextParameterSet.Builder(key).build(LootContextTypes.EMPTY));
+        lootTable.generateLoot(parameterSet, lootStack::add);
+        ItemScatterer.spawn(world, pos, lootStack);
+    }
 
-        assert lootTable != null;
-        lootTable.generateLoot(new LootContextParameterSet.Builder((ServerWorld) player.getWorld()).build(LootContextTypes.EMPTY), lootStack::add);
-        ItemScatterer.spawn(player.getWorld(), BlockPos.ofFloored(new Vec3d(player.getBlockPos().getX(), player.getBlockPos().getY() + 1, player.getBlockPos().getZ())), lootStack);
+    private record Reward(ServerWorld world, BlockPos pos, String reward) {
     }
 }